@@ -11,6 +11,9 @@ import com.example.chess.model.Color;
 import com.example.chess.model.GameResult;
 import com.example.chess.model.Move;
 import com.example.chess.neuralnetwork.NeuralNetwork;
+import com.example.chess.search.LazySmpSearch;
+import com.example.chess.search.SearchLimits;
+import com.example.chess.search.SearchResult;
 import com.example.chess.utils.Constants;
 
 public class Application {
@@ -25,7 +28,13 @@ public class Application {
         System.out.println("Engine_2: " + randomColor.opposite());
 
         Board board = new Board(randomColor);
-        NeuralNetwork neuralNetwork = new NeuralNetwork("chess_nn_model.json");
+        // the binary model written by ModelFileConverter loads much faster than the JSON export
+        String modelFile = new File("chess_nn_model.bin").exists() ? "chess_nn_model.bin" : "chess_nn_model.json";
+        NeuralNetwork neuralNetwork = new NeuralNetwork(modelFile);
+
+        // the player searches under a game clock, the opponent keeps the fixed depth schedule
+        LazySmpSearch playerSearch = new LazySmpSearch(neuralNetwork);
+        long playerClock = Constants.GAME_TIME_MILLIS;
 
         List<Double> playerTimes = new ArrayList<>();
         List<Double> opponentTimes = new ArrayList<>();
@@ -36,22 +45,22 @@ public class Application {
             System.setOut(output);
 
             int moveNumber = 0;
-            double lastEval = 0;
             while (board.getWinner() == GameResult.ONGOING) {
                 if (board.getTurn() == randomColor) {
-                    int depth = Constants.MAX_DEPTH_TO_SEARCH + Math.abs((int) Math.floor(lastEval * 3));
+                    SearchLimits limits = new SearchLimits();
+                    limits.setWhiteTime(playerClock);
+                    limits.setBlackTime(playerClock);
+                    limits.setWhiteIncrement(Constants.GAME_INCREMENT_MILLIS);
+                    limits.setBlackIncrement(Constants.GAME_INCREMENT_MILLIS);
                     long startTime = System.currentTimeMillis();
-                    double cp = board.minimax(
-                        depth,
-                        neuralNetwork,
-                        board.getTurn() == Color.WHITE,
-                        Double.NEGATIVE_INFINITY,
-                        Double.POSITIVE_INFINITY
-                    );
+                    SearchResult result = playerSearch.search(board, limits);
                     long endTime = System.currentTimeMillis();
+                    playerClock += Constants.GAME_INCREMENT_MILLIS - (endTime - startTime);
                     playerTimes.add((endTime - startTime) / 1000.0);
 
-                    Move move = board.getBestMove();
+                    double cp = result.getScore();
+                    int depth = result.getDepth();
+                    Move move = result.getBestMove();
 
                     if (move == null) {
                         if (cp == 0.0) {
@@ -85,15 +94,8 @@ public class Application {
                 } else {
                     int depth = board.getDepthExtensionWithPhase(Constants.MAX_DEPTH_TO_SEARCH);
                     long startTime = System.currentTimeMillis();
-                    double cp = board.minimax(
-                        depth,
-                        neuralNetwork,
-                        board.getTurn() == Color.WHITE,
-                        Double.NEGATIVE_INFINITY,
-                        Double.POSITIVE_INFINITY
-                    );
+                    double cp = board.search(depth, neuralNetwork);
                     long endTime = System.currentTimeMillis();
-                    lastEval = cp;
                     opponentTimes.add((endTime - startTime) / 1000.0);
 
                     Move move = board.getBestMove();
@@ -162,6 +164,7 @@ public class Application {
                     "(Opponent) Median time for a move: " + (opponentTimes.stream().mapToDouble(Double::doubleValue)
                             .sorted().skip(opponentTimes.size() / 2).findFirst().orElse(0.0)) + "s");
             System.out.println("Result: " + board.getWinner().toString());
+            playerSearch.shutdown();
             board.printPGN();
             scanner.close();
         }
@@ -0,0 +1,222 @@
+package com.example.chess.model;
+
+public final class Attacks {
+    /*
+     * precomputed attack sets, square index = rank * 8 + file
+     * leapers (knight, king, pawn) - one mask per square
+     * sliders (bishop, rook) - magic bitboards: the relevant blockers of the occupancy are
+     * multiplied by a per-square magic and the top bits index a shared attack table
+     * magics were found offline by random search and are verified by the perft tests
+     * between / line - squares strictly between two aligned squares / the whole line through them, 0 if not aligned
+     */
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] ROOK_TABLE;
+    private static final long[] BISHOP_TABLE;
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    private static final int[][] KNIGHT_DIRECTIONS = {{1, 2}, {1, -2}, {-1, 2}, {-1, -2}, {2, 1}, {2, -1}, {-2, 1}, {-2, -1}};
+    private static final int[][] KING_DIRECTIONS = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private static final long[] ROOK_MAGICS = {
+        0x2080008220944004L, 0x00C0400010002000L, 0x0100082001001044L, 0x2080080010000482L,
+        0x3080040108008002L, 0x4300082400010002L, 0x1080010002000080L, 0x010005830000204AL,
+        0x8004800020984001L, 0x0400804000200082L, 0x1400802000801000L, 0x0010808008001000L,
+        0xA001001005000800L, 0x0001000400020900L, 0x0299000100020004L, 0x0042000400A10042L,
+        0x0080004000200040L, 0x501000C020004000L, 0x0850008020008010L, 0x4008008008801004L,
+        0x0800808008000400L, 0x0010808002000401L, 0x20400C0062283510L, 0x0200020001008044L,
+        0x0800802080004000L, 0x1808200480400081L, 0x1060010100402012L, 0x2800300300190220L,
+        0x0810040080080081L, 0x021A000404001020L, 0x2050020080800100L, 0x0064104200013084L,
+        0x000281C010800820L, 0x0000882102004202L, 0x0000200080801000L, 0x0000080080801000L,
+        0x0400800400800800L, 0x100A008002800400L, 0xA800880244000110L, 0x0029240042000081L,
+        0x0A01004200820020L, 0x22C0010020810040L, 0x0020020400101000L, 0x640A002040120008L,
+        0x1040040008008080L, 0x1024020004008080L, 0x0804300201240088L, 0x8000010040820014L,
+        0x0480004000200240L, 0x0E00204604810200L, 0xA04840200B001100L, 0x0010048008001080L,
+        0x2008020004004040L, 0x4000020004008080L, 0x140150082102A400L, 0x1148008064010200L,
+        0x4142001040210082L, 0x0801884000106301L, 0x0020084010200101L, 0x0010010020040811L,
+        0x00120010A0088402L, 0x0219000400080201L, 0x08B0904100882214L, 0x8004002091040042L
+    };
+
+    private static final long[] BISHOP_MAGICS = {
+        0x0110206204002020L, 0x0010410800808006L, 0x0E04840082040000L, 0x0124042089011120L,
+        0x1001104100040020L, 0x4005052940000080L, 0x02040221100900A1L, 0x400024004404A002L,
+        0x2200400481840100L, 0x0C0010100911102DL, 0x05C0041C40820004L, 0x0000040400880001L,
+        0x0800040420400000L, 0xE202220190094004L, 0x0020044210300812L, 0x1000810442022124L,
+        0x8012404002020404L, 0x04A8281290110201L, 0x0811003001020810L, 0x440820510C010000L,
+        0x0981009190400000L, 0x0811000A01008222L, 0x0020A20602012000L, 0xC222C09201242108L,
+        0x220808404013A800L, 0x1242100008102085L, 0x0181010120820400L, 0x0462080044004008L,
+        0x8481001001004018L, 0xA008424002013000L, 0x04280280010C2100L, 0x0006044806044200L,
+        0x40B8029001082148L, 0x11830808003A3040L, 0x2144002400021400L, 0x0C80020080080082L,
+        0x0040010010010040L, 0x0124D00900068080L, 0x8108084050408200L, 0x18B8221029288080L,
+        0x21880819844A0800L, 0x10010108424020A1L, 0x0000208420811001L, 0x0000004208020481L,
+        0x2240080100400400L, 0x6401900102004042L, 0x8502106410882500L, 0xC804240400400023L,
+        0x0004060824240440L, 0x0084241208241480L, 0x4000002404120009L, 0x1601062084040040L,
+        0x4010001182020882L, 0x4410409001024110L, 0x00218801210C0800L, 0x4A20040434404000L,
+        0x0008410400824042L, 0x0040204044100900L, 0x00002044420A9080L, 0x0000050089084803L,
+        0x0410009188102400L, 0x0081000460340440L, 0x0810050802240404L, 0x1040020400420040L
+    };
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_ATTACKS[square] = leaperAttacks(square, KNIGHT_DIRECTIONS);
+            KING_ATTACKS[square] = leaperAttacks(square, KING_DIRECTIONS);
+            PAWN_ATTACKS[Color.WHITE.ordinal()][square] = leaperAttacks(square, new int[][]{{1, -1}, {1, 1}});
+            PAWN_ATTACKS[Color.BLACK.ordinal()][square] = leaperAttacks(square, new int[][]{{-1, -1}, {-1, 1}});
+        }
+
+        ROOK_TABLE = new long[initializeMagics(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS)];
+        BISHOP_TABLE = new long[initializeMagics(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS)];
+        fillMagicTable(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS, ROOK_TABLE);
+        fillMagicTable(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS, BISHOP_TABLE);
+
+        for (int from = 0; from < 64; from++) {
+            for (int to = 0; to < 64; to++) {
+                initializeLine(from, to, ROOK_DIRECTIONS);
+                initializeLine(from, to, BISHOP_DIRECTIONS);
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    // squares attacked by a pawn of this color standing on square
+    public static long pawnAttacks(Color color, int square) {
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    public static long rookAttacks(int square, long occupancy) {
+        int index = (int) (((occupancy & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+        return ROOK_TABLE[ROOK_OFFSETS[square] + index];
+    }
+
+    public static long bishopAttacks(int square, long occupancy) {
+        int index = (int) (((occupancy & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+        return BISHOP_TABLE[BISHOP_OFFSETS[square] + index];
+    }
+
+    public static long queenAttacks(int square, long occupancy) {
+        return rookAttacks(square, occupancy) | bishopAttacks(square, occupancy);
+    }
+
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    public static long attacks(Pieces piece, int square, long occupancy) {
+        return switch (piece) {
+            case KNIGHT -> knightAttacks(square);
+            case BISHOP -> bishopAttacks(square, occupancy);
+            case ROOK -> rookAttacks(square, occupancy);
+            case QUEEN -> queenAttacks(square, occupancy);
+            case KING -> kingAttacks(square);
+            default -> throw new IllegalArgumentException("Unexpected value: " + piece);
+        };
+    }
+
+    private static long leaperAttacks(int square, int[][] directions) {
+        long attacks = 0L;
+        for (int[] direction : directions) {
+            int rank = (square >> 3) + direction[0];
+            int file = (square & 7) + direction[1];
+            if (rank >= 0 && rank < 8 && file >= 0 && file < 8) {
+                attacks |= 1L << (rank * 8 + file);
+            }
+        }
+        return attacks;
+    }
+
+    // walks each ray until the first blocker, the blocker square is included
+    private static long slidingAttacks(int square, long occupancy, int[][] directions) {
+        long attacks = 0L;
+        for (int[] direction : directions) {
+            int rank = (square >> 3) + direction[0];
+            int file = (square & 7) + direction[1];
+            while (rank >= 0 && rank < 8 && file >= 0 && file < 8) {
+                long bit = 1L << (rank * 8 + file);
+                attacks |= bit;
+                if ((occupancy & bit) != 0) {
+                    break;
+                }
+                rank += direction[0];
+                file += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static void initializeLine(int from, int to, int[][] directions) {
+        long fromBit = 1L << from;
+        long toBit = 1L << to;
+        long fromAttacks = slidingAttacks(from, 0L, directions);
+        if (from == to || (fromAttacks & toBit) == 0) {
+            return;
+        }
+        LINE[from][to] = (fromAttacks & slidingAttacks(to, 0L, directions)) | fromBit | toBit;
+        BETWEEN[from][to] = slidingAttacks(from, toBit, directions) & slidingAttacks(to, fromBit, directions);
+    }
+
+    // relevant blockers - every ray square except the last one before the edge
+    private static long blockerMask(int square, int[][] directions) {
+        long mask = 0L;
+        for (int[] direction : directions) {
+            int rank = (square >> 3) + direction[0];
+            int file = (square & 7) + direction[1];
+            while (rank + direction[0] >= 0 && rank + direction[0] < 8 && file + direction[1] >= 0 && file + direction[1] < 8) {
+                mask |= 1L << (rank * 8 + file);
+                rank += direction[0];
+                file += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    private static int initializeMagics(int[][] directions, long[] masks, int[] shifts, int[] offsets) {
+        int size = 0;
+        for (int square = 0; square < 64; square++) {
+            masks[square] = blockerMask(square, directions);
+            int bits = Long.bitCount(masks[square]);
+            shifts[square] = 64 - bits;
+            offsets[square] = size;
+            size += 1 << bits;
+        }
+        return size;
+    }
+
+    private static void fillMagicTable(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets, long[] table) {
+        for (int square = 0; square < 64; square++) {
+            long mask = masks[square];
+            // enumerate every subset of the mask (Carry-Rippler)
+            long subset = 0L;
+            do {
+                int index = (int) ((subset * magics[square]) >>> shifts[square]);
+                table[offsets[square] + index] = slidingAttacks(square, subset, directions);
+                subset = (subset - mask) & mask;
+            } while (subset != 0);
+        }
+    }
+}
@@ -2,7 +2,11 @@ package com.example.chess.model;
 
 import java.util.*;
 
+import com.example.chess.neuralnetwork.Accumulator;
+import com.example.chess.neuralnetwork.EvalBatch;
+import com.example.chess.neuralnetwork.EvalCache;
 import com.example.chess.neuralnetwork.NeuralNetwork;
+import com.example.chess.utils.Constants;
 import com.example.chess.utils.Utilities;
 
 public class Board {
@@ -11,40 +15,224 @@ public class Board {
      * piece type - 3 bits
      * square representation - ....|....|....|....|....|....|....|.... => color-piece
      * board representation - array of 8 32-bit integers for each rank
+     *
+     * bitboards - one 64-bit set per piece type and per color, bit index = rank * 8 + file
+     * kept in sync with the rank rows by putPiece/removePiece
+     * together with per-color piece counts, king squares, material (Pieces.getValue, kings excluded)
+     * and the game phase (knight/bishop 1, rook 2, queen 4, 24 at the start position)
+     *
+     * moves are PackedMove ints, played moves with their moved and captured pieces are kept per ply
+     * the search gets its moves from one MovePicker per height, which generates them in stages
+     *
+     * once a network is attached the first NN layer is kept in an accumulator stack,
+     * makeMove pushes the inputs the move changed and undoMove pops
      */
 
+    private static final Color[] COLORS = Color.values();
+    private static final Pieces[] PIECES = Pieces.values();
+
+    private static final int WHITE_KING_SIDE = 1;
+    private static final int WHITE_QUEEN_SIDE = 2;
+    private static final int BLACK_KING_SIDE = 4;
+    private static final int BLACK_QUEEN_SIDE = 8;
+    private static final int ALL_CASTLING_RIGHTS = 15;
+    // castling rights kept by a move from or to each square, a king or rook leaving or a rook being taken clears them
+    private static final int[] CASTLING_MASKS = new int[64];
+    static {
+        Arrays.fill(CASTLING_MASKS, ALL_CASTLING_RIGHTS);
+        CASTLING_MASKS[0] = ~WHITE_QUEEN_SIDE & ALL_CASTLING_RIGHTS;
+        CASTLING_MASKS[4] = ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE) & ALL_CASTLING_RIGHTS;
+        CASTLING_MASKS[7] = ~WHITE_KING_SIDE & ALL_CASTLING_RIGHTS;
+        CASTLING_MASKS[56] = ~BLACK_QUEEN_SIDE & ALL_CASTLING_RIGHTS;
+        CASTLING_MASKS[60] = ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE) & ALL_CASTLING_RIGHTS;
+        CASTLING_MASKS[63] = ~BLACK_KING_SIDE & ALL_CASTLING_RIGHTS;
+    }
+
+    private static final int[] PHASE_WEIGHTS = {0, 0, 1, 1, 2, 4, 0};
+    // Pieces.getValue with a king worth more than everything else, for exchanges on one square
+    private static final int[] SEE_VALUES = {0, 100, 320, 330, 500, 900, 20000};
+    private static final int MAX_PHASE = 24;
+
+    private static final int MAX_PLY = 128;
+    private static final int MAX_MOVES = 256;
+    // nodes between two looks at the stop flag
+    private static final int STOP_CHECK_INTERVAL = 1024;
+    // a capture has to be able to bring the evaluation this close to alpha to be searched in quiescence
+    private static final int DELTA_MARGIN = 200;
+    private static final int ASPIRATION_DEPTH = 4;
+    private static final int NULL_MOVE_DEPTH = 3;
+    private static final int NULL_MOVE_EVAL_MARGIN = 100;
+    private static final int LMR_DEPTH = 3;
+    private static final int LMR_MOVE_NUMBER = 3;
+    // reduction by depth and move number, grows with the log of both
+    private static final int[][] LMR_REDUCTIONS = new int[64][64];
+
+    static {
+        for (int depth = 1; depth < 64; depth++) {
+            for (int moveNumber = 1; moveNumber < 64; moveNumber++) {
+                LMR_REDUCTIONS[depth][moveNumber] = (int) (0.75 + Math.log(depth) * Math.log(moveNumber) / 2.25);
+            }
+        }
+    }
+    private static final int ASPIRATION_WINDOW = 16;
+
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
     private BoardRow[] board;
+    private final long[] pieceBitboards = new long[7];
+    private final long[] colorBitboards = new long[2];
+    private final int[][] pieceCounts = new int[2][7];
+    private final int[] kingSquares = new int[2];
+    private final int[] material = new int[2];
+    private int phase;
+    private final MoveGenerator moveGenerator = new MoveGenerator(this);
     private List<Move> moveHistory;
     private Color turn = Color.WHITE;
     private final Color playerColor;
     private GameResult winner;
-    private int whiteKingFirstMove = -1;
-    private int blackKingFirstMove = -1;
-    private int whiteRookOnFileZeroFirstMove = -1;
-    private int whiteRookOnFileSevenFirstMove = -1;
-    private int blackRookOnFileZeroFirstMove = -1;
-    private int blackRookOnFileSevenFirstMove = -1;
-    private HashMap<String, Integer> positionCountMap;
-    private HashMap<String, TTEntry> transpositionTable;
+    private int castlingRights = ALL_CASTLING_RIGHTS;
+    private int enPassantSquare = -1;
+    private int halfmoveClock = 0;
+    // plies played before the position the board was set up from, for the fullmove number
+    private int plyOffset = 0;
+    private TranspositionTable transpositionTable;
+    private Accumulator accumulator;
+    private EvalCache evalCache;
+    private boolean batchedLeaves = false;
+    private EvalBatch evalBatch;
+    private final double[] batchScores = new double[MAX_MOVES];
+    private final long[] frontierKeys = new long[MAX_MOVES];
+    private long zobristKey;
+    private int ply = 0;
+    private long[] keyHistory = new long[256];
+    private int[] playedMoves = new int[256];
+    private byte[] movedPieces = new byte[256];
+    private byte[] capturedPieces = new byte[256];
+    // castling rights | en passant square + 1 << 4 | halfmove clock << 11, as they were before move i
+    private int[] irreversibleStates = new int[256];
+    private final int[] moveBuffer = new int[MAX_MOVES];
+    private final int[] exchangeGains = new int[32];
+    private final SearchHistory searchHistory = new SearchHistory(MAX_PLY);
+    private final MovePicker[] movePickers = new MovePicker[MAX_PLY];
+    private final int[][] searchedQuiets = new int[MAX_PLY][MAX_MOVES];
+    private long nodes = 0;
+    private volatile boolean stopRequested = false;
+    // set from the thread driving the search while it runs
+    private volatile long nodeLimit = Long.MAX_VALUE;
+    private volatile boolean hasDeadline = false;
+    private volatile long deadline;
+    private boolean aborted = false;
+    private int rootPly = -1;
+    private int rootBestMove = PackedMove.NONE;
+    private int selectiveDepth = 0;
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    private long lastRootKey;
+    private int lastRootScore;
 
     public Board(Color playerColor) {
         board = new BoardRow[8];
-        positionCountMap = new HashMap<>();
         moveHistory = new ArrayList<>();
         this.playerColor = playerColor;
         this.winner = GameResult.ONGOING;
-        this.transpositionTable = new HashMap<>();
         initializeStartingPosition();
+        initializeBitboards();
+        this.zobristKey = computeZobristKey();
     }
 
     public Board(String fen, Color playerColor) {
         board = new BoardRow[8];
-        positionCountMap = new HashMap<>();
         moveHistory = new ArrayList<>();
         this.playerColor = playerColor;
         this.winner = GameResult.ONGOING;
-        this.transpositionTable = new HashMap<>();
         initializeFromFEN(fen);
+        initializeBitboards();
+        this.zobristKey = computeZobristKey();
+    }
+
+    // independent copy for another search thread, sharing the transposition table and eval cache
+    public Board(Board other) {
+        board = new BoardRow[8];
+        for(int i = 0; i < 8; i++) {
+            board[i] = new BoardRow(other.board[i].getRow());
+        }
+        moveHistory = new ArrayList<>(other.moveHistory);
+        this.playerColor = other.playerColor;
+        this.winner = other.winner;
+        this.turn = other.turn;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.halfmoveClock = other.halfmoveClock;
+        this.plyOffset = other.plyOffset;
+        this.ply = other.ply;
+        this.keyHistory = other.keyHistory.clone();
+        this.playedMoves = other.playedMoves.clone();
+        this.movedPieces = other.movedPieces.clone();
+        this.capturedPieces = other.capturedPieces.clone();
+        this.irreversibleStates = other.irreversibleStates.clone();
+        this.zobristKey = other.zobristKey;
+        this.transpositionTable = other.getTranspositionTable();
+        this.evalCache = other.getEvalCache();
+        this.batchedLeaves = other.batchedLeaves;
+        initializeBitboards();
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        if(transpositionTable == null) {
+            transpositionTable = new TranspositionTable(Constants.DEFAULT_HASH_SIZE_MB);
+        }
+        return transpositionTable;
+    }
+
+    public void setTranspositionTable(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    public EvalCache getEvalCache() {
+        if(evalCache == null) {
+            evalCache = new EvalCache(Constants.DEFAULT_EVAL_CACHE_SIZE_MB);
+        }
+        return evalCache;
+    }
+
+    // the cache belongs to one network, give each network its own cache
+    public void setEvalCache(EvalCache evalCache) {
+        this.evalCache = evalCache;
+    }
+
+    // network score of the current position, served from the eval cache when the position was seen before
+    public double evaluate(NeuralNetwork neuralNetwork) {
+        EvalCache cache = getEvalCache();
+        long entry = cache.probe(zobristKey);
+        if(entry != 0) {
+            return EvalCache.score(entry);
+        }
+        double score = neuralNetwork.evaluate(this);
+        cache.store(zobristKey, score);
+        return score;
+    }
+
+    // with batched leaves the children of depth 1 nodes are scored in one network batch
+    public void setBatchedLeaves(boolean batchedLeaves) {
+        this.batchedLeaves = batchedLeaves;
+    }
+
+    // attaches the network whose first layer is updated incrementally by makeMove/undoMove
+    public void setNeuralNetwork(NeuralNetwork neuralNetwork) {
+        if(accumulator == null || accumulator.getNetwork() != neuralNetwork) {
+            if(accumulator != null && evalCache != null) {
+                evalCache.clear();
+            }
+            accumulator = new Accumulator(neuralNetwork, MAX_PLY);
+        }
+        accumulator.refresh(this);
+    }
+
+    public Accumulator getAccumulator(NeuralNetwork neuralNetwork) {
+        if(accumulator == null || accumulator.getNetwork() != neuralNetwork) {
+            setNeuralNetwork(neuralNetwork);
+        }
+        return accumulator;
     }
 
     public BoardRow[] getBoardRows() {
@@ -65,16 +253,16 @@ public class Board {
 
         // castling availability
         String castling = "";
-        if(whiteKingFirstMove == -1 && whiteRookOnFileSevenFirstMove == -1 && board[0].getPiece((byte)7) == Pieces.ROOK && board[0].getColor((byte)7) == Color.WHITE) {
+        if((castlingRights & WHITE_KING_SIDE) != 0) {
             castling += "K";
         }
-        if(whiteKingFirstMove == -1 && whiteRookOnFileZeroFirstMove == -1 && board[0].getPiece((byte)0) == Pieces.ROOK && board[0].getColor((byte)0) == Color.WHITE) {
+        if((castlingRights & WHITE_QUEEN_SIDE) != 0) {
             castling += "Q";
         }
-        if(blackKingFirstMove == -1 && blackRookOnFileSevenFirstMove == -1 && board[7].getPiece((byte)7) == Pieces.ROOK && board[7].getColor((byte)7) == Color.BLACK) {
+        if((castlingRights & BLACK_KING_SIDE) != 0) {
             castling += "k";
         }
-        if(blackKingFirstMove == -1 && blackRookOnFileZeroFirstMove == -1 && board[7].getPiece((byte)0) == Pieces.ROOK && board[7].getColor((byte)0) == Color.BLACK) {
+        if((castlingRights & BLACK_QUEEN_SIDE) != 0) {
             castling += "q";
         }
         if(castling.equals("")) {
@@ -83,22 +271,236 @@ public class Board {
 
         // en passant target square
         String enPassantAvailable = "-";
-        if(moveHistory.size() > 0) {
-            Move lastMove = moveHistory.get(moveHistory.size() - 1);
-            if(lastMove instanceof PawnMove && Math.abs(lastMove.fromRank - lastMove.toRank) == 2) {
-                char file = (char) ('a' + lastMove.fromFile);
-                char rank = (char) ('1' + (lastMove.fromRank + lastMove.toRank) / 2);
-                enPassantAvailable = "" + file + rank;
+        if(enPassantSquare != -1) {
+            char file = (char) ('a' + (enPassantSquare & 7));
+            char rank = (char) ('1' + (enPassantSquare >> 3));
+            enPassantAvailable = "" + file + rank;
+        }
+
+        return String.join(" ", rows, sideToMove, castling, enPassantAvailable,
+            String.valueOf(halfmoveClock), String.valueOf(getFullmoveNumber()));
+    }
+
+    // castling rights mask - K = 1, Q = 2, k = 4, q = 8
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    // square a pawn that just made a double push can be taken on, -1 if none
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public int getEnPassantFile() {
+        return enPassantSquare == -1 ? -1 : enPassantSquare & 7;
+    }
+
+    // plies since the last capture or pawn move
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return (plyOffset + ply) / 2 + 1;
+    }
+
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    private long computeZobristKey() {
+        long key = 0L;
+        for(int rank = 0; rank < 8; rank++) {
+            for(byte file = 0; file < 8; file++) {
+                Pieces piece = board[rank].getPiece(file);
+                if(piece != Pieces.NONE) {
+                    key ^= Zobrist.piece(board[rank].getColor(file), piece, rank * 8 + file);
+                }
             }
         }
+        if(turn == Color.BLACK) {
+            key ^= Zobrist.sideToMove();
+        }
+        key ^= Zobrist.castling(getCastlingRights());
+        key ^= Zobrist.enPassant(getEnPassantFile());
+        return key;
+    }
 
-        return String.join(" ", rows, sideToMove, castling, enPassantAvailable);
+    private long updateZobristKey(long key, int move, Color color, Pieces movedPiece, byte capturedPiece, int castlingRightsBefore, int enPassantFileBefore) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+
+        key ^= Zobrist.piece(color, movedPiece, from);
+        key ^= Zobrist.piece(color, pieceAt(to), to);
+        key ^= Zobrist.piece(COLORS[(capturedPiece >> 3) & 1], PIECES[capturedPiece & 7], to);
+
+        int flags = PackedMove.flags(move);
+        if(flags == PackedMove.KING_SIDE_CASTLE) {
+            key ^= Zobrist.piece(color, Pieces.ROOK, from + 3) ^ Zobrist.piece(color, Pieces.ROOK, from + 1);
+        } else if(flags == PackedMove.QUEEN_SIDE_CASTLE) {
+            key ^= Zobrist.piece(color, Pieces.ROOK, from - 4) ^ Zobrist.piece(color, Pieces.ROOK, from - 1);
+        } else if(flags == PackedMove.EN_PASSANT) {
+            key ^= Zobrist.piece(color.opposite(), Pieces.PAWN, (from & ~7) | (to & 7));
+        }
+
+        key ^= Zobrist.sideToMove();
+        key ^= Zobrist.castling(castlingRightsBefore) ^ Zobrist.castling(getCastlingRights());
+        key ^= Zobrist.enPassant(enPassantFileBefore) ^ Zobrist.enPassant(getEnPassantFile());
+        return key;
     }
 
     public BoardRow getBoardRow(int rowIndex) {
         return board[rowIndex];
     }
 
+    public long getPieceBitboard(Pieces piece) {
+        return pieceBitboards[piece.ordinal()];
+    }
+
+    public long getColorBitboard(Color color) {
+        return colorBitboards[color.ordinal()];
+    }
+
+    public long getPieceBitboard(Color color, Pieces piece) {
+        return pieceBitboards[piece.ordinal()] & colorBitboards[color.ordinal()];
+    }
+
+    public long getOccupancy() {
+        return colorBitboards[0] | colorBitboards[1];
+    }
+
+    Pieces pieceAt(int square) {
+        return board[square >> 3].getPiece((byte) (square & 7));
+    }
+
+    private void initializeBitboards() {
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(colorBitboards, 0L);
+        Arrays.fill(pieceCounts[0], 0);
+        Arrays.fill(pieceCounts[1], 0);
+        Arrays.fill(kingSquares, -1);
+        Arrays.fill(material, 0);
+        phase = 0;
+        for(int rank = 0; rank < 8; rank++) {
+            for(byte file = 0; file < 8; file++) {
+                Pieces piece = board[rank].getPiece(file);
+                if(piece != Pieces.NONE) {
+                    long bit = 1L << (rank * 8 + file);
+                    pieceBitboards[piece.ordinal()] |= bit;
+                    colorBitboards[board[rank].getColor(file).ordinal()] |= bit;
+                    addPieceState(board[rank].getColor(file), piece, rank * 8 + file);
+                }
+            }
+        }
+    }
+
+    private void putPiece(int square, Color color, Pieces piece) {
+        board[square >> 3].setFile((byte) (square & 7), color, piece);
+        long bit = 1L << square;
+        pieceBitboards[piece.ordinal()] |= bit;
+        colorBitboards[color.ordinal()] |= bit;
+        addPieceState(color, piece, square);
+    }
+
+    private void removePiece(int square) {
+        long bit = 1L << square;
+        if((getOccupancy() & bit) == 0) {
+            return;
+        }
+        BoardRow row = board[square >> 3];
+        byte file = (byte) (square & 7);
+        Pieces piece = row.getPiece(file);
+        Color color = row.getColor(file);
+        pieceBitboards[piece.ordinal()] &= ~bit;
+        colorBitboards[color.ordinal()] &= ~bit;
+        row.setFile(file, (byte) 0);
+
+        pieceCounts[color.ordinal()][piece.ordinal()]--;
+        material[color.ordinal()] -= piece.getValue();
+        phase -= PHASE_WEIGHTS[piece.ordinal()];
+        if(piece == Pieces.KING) {
+            kingSquares[color.ordinal()] = -1;
+        }
+    }
+
+    private void addPieceState(Color color, Pieces piece, int square) {
+        pieceCounts[color.ordinal()][piece.ordinal()]++;
+        material[color.ordinal()] += piece.getValue();
+        phase += PHASE_WEIGHTS[piece.ordinal()];
+        if(piece == Pieces.KING) {
+            kingSquares[color.ordinal()] = square;
+        }
+    }
+
+    public int getPieceCount(Color color, Pieces piece) {
+        return pieceCounts[color.ordinal()][piece.ordinal()];
+    }
+
+    public int getKingSquare(Color color) {
+        return kingSquares[color.ordinal()];
+    }
+
+    public int getMaterial(Color color) {
+        return material[color.ordinal()];
+    }
+
+    // 24 with all minor and major pieces on the board, 0 with only kings and pawns left
+    public int getPhase() {
+        return Math.min(phase, MAX_PHASE);
+    }
+
+    // moves the pieces on the board only, history and hash are handled by makeMove
+    private byte applyMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int flags = PackedMove.flags(move);
+
+        byte capturedPiece = board[to >> 3].getFile((byte) (to & 7));
+        Color color = board[from >> 3].getColor((byte) (from & 7));
+        Pieces piece = PackedMove.isPromotion(move) ? PackedMove.promotionPiece(move) : pieceAt(from);
+
+        removePiece(to);
+        removePiece(from);
+        putPiece(to, color, piece);
+
+        if(flags == PackedMove.KING_SIDE_CASTLE) {
+            removePiece(from + 3);
+            putPiece(from + 1, color, Pieces.ROOK);
+        } else if(flags == PackedMove.QUEEN_SIDE_CASTLE) {
+            removePiece(from - 4);
+            putPiece(from - 1, color, Pieces.ROOK);
+        } else if(flags == PackedMove.EN_PASSANT) {
+            removePiece((from & ~7) | (to & 7));
+        }
+
+        return capturedPiece;
+    }
+
+    private void revertMove(int move, byte capturedPiece) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int flags = PackedMove.flags(move);
+
+        Color color = board[to >> 3].getColor((byte) (to & 7));
+        Pieces piece = PackedMove.isPromotion(move) ? Pieces.PAWN : pieceAt(to);
+
+        removePiece(to);
+        putPiece(from, color, piece);
+        if((capturedPiece & 7) != 0) {
+            putPiece(to, COLORS[(capturedPiece >> 3) & 1], PIECES[capturedPiece & 7]);
+        }
+
+        if(flags == PackedMove.KING_SIDE_CASTLE) {
+            removePiece(from + 1);
+            putPiece(from + 3, color, Pieces.ROOK);
+        } else if(flags == PackedMove.QUEEN_SIDE_CASTLE) {
+            removePiece(from - 1);
+            putPiece(from - 4, color, Pieces.ROOK);
+        } else if(flags == PackedMove.EN_PASSANT) {
+            putPiece((from & ~7) | (to & 7), color.opposite(), Pieces.PAWN);
+        }
+    }
+
     private void initializeFromFEN(String fen) {
         String[] fenParts = fen.split(" ");
         String[] ranks = fenParts[0].split("/");
@@ -126,20 +528,45 @@ public class Board {
 
         turn = fenParts[1].equals("w") ? Color.WHITE : Color.BLACK;
 
-        if(fenParts.length > 2 && !fenParts[2].equals("-")) {
-            whiteRookOnFileSevenFirstMove = fenParts[2].contains("K") ? -1 : 0;
-            whiteRookOnFileZeroFirstMove = fenParts[2].contains("Q") ? -1 : 0;
-            blackRookOnFileSevenFirstMove = fenParts[2].contains("k") ? -1 : 0;
-            blackRookOnFileZeroFirstMove = fenParts[2].contains("q") ? -1 : 0;
+        castlingRights = ALL_CASTLING_RIGHTS;
+        if(fenParts.length > 2) {
+            castlingRights = (fenParts[2].contains("K") ? WHITE_KING_SIDE : 0)
+                | (fenParts[2].contains("Q") ? WHITE_QUEEN_SIDE : 0)
+                | (fenParts[2].contains("k") ? BLACK_KING_SIDE : 0)
+                | (fenParts[2].contains("q") ? BLACK_QUEEN_SIDE : 0);
+        }
+        // a right whose king or rook is not on its square could never be used, drop it so the mask stays exact
+        if(!isOwnPiece(0, (byte) 4, Color.WHITE, Pieces.KING)) {
+            castlingRights &= CASTLING_MASKS[4];
+        }
+        if(!isOwnPiece(0, (byte) 0, Color.WHITE, Pieces.ROOK)) {
+            castlingRights &= CASTLING_MASKS[0];
+        }
+        if(!isOwnPiece(0, (byte) 7, Color.WHITE, Pieces.ROOK)) {
+            castlingRights &= CASTLING_MASKS[7];
+        }
+        if(!isOwnPiece(7, (byte) 4, Color.BLACK, Pieces.KING)) {
+            castlingRights &= CASTLING_MASKS[60];
+        }
+        if(!isOwnPiece(7, (byte) 0, Color.BLACK, Pieces.ROOK)) {
+            castlingRights &= CASTLING_MASKS[56];
+        }
+        if(!isOwnPiece(7, (byte) 7, Color.BLACK, Pieces.ROOK)) {
+            castlingRights &= CASTLING_MASKS[63];
         }
 
         if(fenParts.length > 3 && !fenParts[3].equals("-")) {
-            int firstRank = turn.opposite() == Color.WHITE ? 1 : 6;
-            int delta = turn.opposite() == Color.WHITE ? 1 : -1;
-            int file = fenParts[3].charAt(0) - 'a';
-            Move move = new PawnMove(turn, firstRank, (byte) file, firstRank + 2 * delta, (byte) file, false, Pieces.NONE, false);
-            moveHistory.add(move);
+            enPassantSquare = (fenParts[3].charAt(1) - '1') * 8 + (fenParts[3].charAt(0) - 'a');
+        }
+        if(fenParts.length > 4) {
+            halfmoveClock = Integer.parseInt(fenParts[4]);
         }
+        int fullmoveNumber = fenParts.length > 5 ? Integer.parseInt(fenParts[5]) : 1;
+        plyOffset = 2 * (fullmoveNumber - 1) + (turn == Color.BLACK ? 1 : 0);
+    }
+
+    private boolean isOwnPiece(int rank, byte file, Color color, Pieces piece) {
+        return board[rank].getPiece(file) == piece && board[rank].getColor(file) == color;
     }
 
     private void initializeStartingPosition() {
@@ -171,29 +598,11 @@ public class Board {
         board[7].setFile((byte) 7, Color.BLACK, Pieces.ROOK);
     }
 
-    private List<Move> getPossibleMoves(int rank, byte file) {
-        List<Move> moves = new ArrayList<>();
-        Pieces piece = board[rank].getPiece(file);
-
-        if(piece == Pieces.PAWN) {
-            moves.addAll(PawnMove.getPossibleMoves(this, moveHistory, rank, file, true));
-        } else if(piece == Pieces.KNIGHT) {
-            moves.addAll(KnightMove.getPossibleMoves(this, rank, file));
-        } else if(piece == Pieces.BISHOP || piece == Pieces.ROOK || piece == Pieces.QUEEN) {
-            moves.addAll(SlidingMove.getPossibleMoves(this, rank, file, piece));
-        } else if(piece == Pieces.KING) {
-            moves.addAll(KingMove.getPossibleMoves(this, rank, file));
-        }
-
-        return moves;
-    }
-
     public List<Move> getLegalMoves(int rank, byte file) {
-        List<Move> moves = getPossibleMoves(rank, file);
         List<Move> legalMoves = new ArrayList<>();
 
-        for(Move move : moves) {
-            if(isMoveLegal(move)) {
+        for(Move move : getAllLegalMoves()) {
+            if(move.getFromRank() == rank && move.getFromFile() == file) {
                 legalMoves.add(move);
             }
         }
@@ -202,40 +611,56 @@ public class Board {
     }
 
     public List<Move> getAllLegalMoves() {
-        List<Move> moves = new ArrayList<>();
-
-        for(byte i = 0; i < 8; i++) {
-            for(byte j = 0; j < 8; j++) {
-                if(board[i].getColor(j) == turn && board[i].getPiece(j) != Pieces.NONE) {   
-                    moves.addAll(getLegalMoves(i, j));
-                }
-            }
+        int end = moveGenerator.generateLegalMoves(moveBuffer, 0);
+        List<Move> moves = new ArrayList<>(end);
+        for(int i = 0; i < end; i++) {
+            moves.add(toMove(moveBuffer[i]));
         }
-
         return moves;
     }
 
-    private boolean isMoveLegal(Move move) {
-        byte capturedPiece = Move.makeMove(board, move);
-        boolean isLegal = !isKingInCheck(turn);
-        move.setIsKingInCheck(isKingInCheck(turn.opposite()));
-        Move.undoMove(board, move, capturedPiece);
-        
-        return isLegal;
+    // builds the Move object for PGN/UCI output, move has to be legal in the current position
+    public Move toMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int fromRank = from >> 3;
+        byte fromFile = (byte) (from & 7);
+        int toRank = to >> 3;
+        byte toFile = (byte) (to & 7);
+        Color color = board[fromRank].getColor(fromFile);
+        Pieces piece = pieceAt(from);
+        boolean isCapture = PackedMove.isCapture(move);
+
+        Move result = switch (piece) {
+            case PAWN -> new PawnMove(color, fromRank, fromFile, toRank, toFile, isCapture, PackedMove.promotionPiece(move), PackedMove.isEnPassant(move));
+            case KNIGHT -> new KnightMove(color, fromRank, fromFile, toRank, toFile, isCapture);
+            case KING -> PackedMove.isCastling(move) ?
+                new KingMove(color, fromRank, fromFile, toRank, toFile, isCapture, toFile) :
+                new KingMove(color, fromRank, fromFile, toRank, toFile, isCapture);
+            default -> new SlidingMove(color, fromRank, fromFile, toRank, toFile, isCapture, piece);
+        };
+        result.setIsKingInCheck(PackedMove.givesCheck(move));
+        return result;
     }
 
-    private byte findKing(Color color) {
-        byte king = 0;
-        for(byte i = 0; i < 8; i++) {
-            for(byte j = 0; j < 8; j++) {
-                if(board[i].getPiece(j) == Pieces.KING && board[i].getColor(j) == color) {
-                    king = (byte) ((i << 4) | j);
-                    return king;
-                }
-            }
+    public int toPackedMove(Move move) {
+        int from = move.getFromRank() * 8 + move.getFromFile();
+        int to = move.getToRank() * 8 + move.getToFile();
+
+        if(move instanceof PawnMove && ((PawnMove) move).isPromotion()) {
+            return PackedMove.promotion(from, to, ((PawnMove) move).getPromotedPiece(), move.isCapture());
+        } else if(move instanceof PawnMove && ((PawnMove) move).isEnPassant()) {
+            return PackedMove.encode(from, to, PackedMove.EN_PASSANT);
+        } else if(move instanceof PawnMove && Math.abs(move.getToRank() - move.getFromRank()) == 2) {
+            return PackedMove.encode(from, to, PackedMove.DOUBLE_PAWN_PUSH);
+        } else if(move instanceof KingMove && ((KingMove) move).isCastlingMove()) {
+            return PackedMove.encode(from, to, move.getToFile() == 6 ? PackedMove.KING_SIDE_CASTLE : PackedMove.QUEEN_SIDE_CASTLE);
         }
+        return PackedMove.encode(from, to, move.isCapture() ? PackedMove.CAPTURE : PackedMove.QUIET);
+    }
 
-        return (byte) -1;
+    private int findKing(Color color) {
+        return kingSquares[color.ordinal()];
     }
 
     public boolean isPassedPawn(int rank, byte file) {
@@ -260,102 +685,115 @@ public class Board {
     }
 
     public boolean isKingInCheck(Color color) {
-        byte kingRankAndFile = findKing(color);
+        int kingSquare = findKing(color);
 
-        if(kingRankAndFile == -1) {
+        if(kingSquare == -1) {
             return false;
         }
 
-        byte rank = (byte) (kingRankAndFile >> 4);
-        byte file = (byte) (kingRankAndFile & 0b1111);
+        byte rank = (byte) (kingSquare >> 3);
+        byte file = (byte) (kingSquare & 7);
 
         return isSquareAttackedByColor(rank, file, color.opposite());
     }
 
-    private boolean isSquareAttackedByColor(int rank, byte file, Color color) {
-        for(int[] offset : Pieces.PAWN.getDirections(color.opposite())) {
-            byte newRank = (byte) (rank + offset[0]);
-            byte newFile = (byte) (file + offset[1]);
-            if(Utilities.isOnBoard(newRank, newFile) && 
-                board[newRank].getPiece(newFile) == Pieces.PAWN &&
-                board[newRank].getColor(newFile) == color
-            ) {
-                return true;
-            }
-        }
-
-        for(int[] offset : Pieces.KNIGHT.getDirections(color)) {
-            byte newRank = (byte) (rank + offset[0]);
-            byte newFile = (byte) (file + offset[1]);
-            if(Utilities.isOnBoard(newRank, newFile) && 
-                board[newRank].getPiece(newFile) == Pieces.KNIGHT &&
-                board[newRank].getColor(newFile) == color
-            ) {
-                return true;
-            }
-        }
-
-        for(int[] offset : Pieces.BISHOP.getDirections(color)) {
-            for(int i = 1; i < 8; i++) {
-                byte newRank = (byte) (rank + i * offset[0]);
-                byte newFile = (byte) (file + i * offset[1]);
-                if(Utilities.isOnBoard(newRank, newFile)) {
-                    if(board[newRank].getPiece(newFile) == Pieces.BISHOP &&
-                    board[newRank].getColor(newFile) == color) {
-                        return true;
-                    } else if (board[newRank].getPiece(newFile) != Pieces.NONE) {
-                        break;
-                    }
-                }
-            }
+    /*
+     * static exchange evaluation: the material the side to move wins (negative: loses) on the target
+     * square if both sides keep recapturing there with their least valuable piece and either may stop
+     * each capture takes its piece off the occupancy, so sliders lined up behind it join in (x-rays)
+     * gains[d] is what the side making capture d wins if the exchange stops right after it, the last one
+     * is a guess for a capture nobody can make, folding the rest back gives the best stopping point for both sides
+     * pins are ignored, a king only recaptures when the other side has nothing left to take it with
+     */
+    public int staticExchange(int move) {
+        if (PackedMove.isCastling(move)) {
+            return 0;
+        }
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        long occupancy = getOccupancy() ^ (1L << from);
+        Pieces onSquare = pieceAt(from);
+
+        int[] gains = exchangeGains;
+        gains[0] = PackedMove.isCapture(move) ? SEE_VALUES[PackedMove.isEnPassant(move) ? Pieces.PAWN.ordinal() : pieceAt(to).ordinal()] : 0;
+        if (PackedMove.isEnPassant(move)) {
+            occupancy ^= 1L << (to + (turn == Color.WHITE ? -8 : 8));
+        }
+        if (PackedMove.isPromotion(move)) {
+            onSquare = PackedMove.promotionPiece(move);
+            gains[0] += SEE_VALUES[onSquare.ordinal()] - SEE_VALUES[Pieces.PAWN.ordinal()];
         }
 
-        for(int[] offset : Pieces.ROOK.getDirections(color)) {
-            for(int i = 1; i < 8; i++) {
-                byte newRank = (byte) (rank + i * offset[0]);
-                byte newFile = (byte) (file + i * offset[1]);
-                if(Utilities.isOnBoard(newRank, newFile)) {
-                    if(board[newRank].getPiece(newFile) == Pieces.ROOK &&
-                    board[newRank].getColor(newFile) == color) {
-                        return true;
-                    } else if (board[newRank].getPiece(newFile) != Pieces.NONE) {
-                        break;
-                    }
-                }
+        long diagonalSliders = pieceBitboards[Pieces.BISHOP.ordinal()] | pieceBitboards[Pieces.QUEEN.ordinal()];
+        long straightSliders = pieceBitboards[Pieces.ROOK.ordinal()] | pieceBitboards[Pieces.QUEEN.ordinal()];
+        long attackers = attackersTo(to, occupancy) & occupancy;
+        Color side = turn.opposite();
+        int depth = 0;
+        while (true) {
+            depth++;
+            gains[depth] = SEE_VALUES[onSquare.ordinal()] - gains[depth - 1];
+            // neither side can do better by going on
+            if (Math.max(-gains[depth - 1], gains[depth]) < 0) {
+                break;
             }
-        }
 
-        for(int[] offset : Pieces.QUEEN.getDirections(color)) {
-            for(int i = 1; i < 8; i++) {
-                byte newRank = (byte) (rank + i * offset[0]);
-                byte newFile = (byte) (file + i * offset[1]);
-                if(Utilities.isOnBoard(newRank, newFile)) {
-                    if(board[newRank].getPiece(newFile) == Pieces.QUEEN &&
-                    board[newRank].getColor(newFile) == color) {
-                        return true;
-                    } else if (board[newRank].getPiece(newFile) != Pieces.NONE) {
-                        break;
-                    }
-                }
+            long sideAttackers = attackers & colorBitboards[side.ordinal()];
+            if (sideAttackers == 0) {
+                break;
+            }
+            Pieces attacker = Pieces.PAWN;
+            while ((sideAttackers & pieceBitboards[attacker.ordinal()]) == 0) {
+                attacker = PIECES[attacker.ordinal() + 1];
+            }
+            // the king may not take into an attacked square
+            if (attacker == Pieces.KING && (attackers & colorBitboards[side.opposite().ordinal()]) != 0) {
+                break;
             }
-        }
 
-        for(int[] offset : Pieces.KING.getDirections(color)) {
-            byte newRank = (byte) (rank + offset[0]);
-            byte newFile = (byte) (file + offset[1]);
-            if(Utilities.isOnBoard(newRank, newFile) && 
-                board[newRank].getPiece(newFile) == Pieces.KING &&
-                board[newRank].getColor(newFile) == color
-            ) {
-                return true;
+            long attackerBits = sideAttackers & pieceBitboards[attacker.ordinal()];
+            occupancy ^= attackerBits & -attackerBits;
+            if (attacker == Pieces.PAWN || attacker == Pieces.BISHOP || attacker == Pieces.QUEEN) {
+                attackers |= Attacks.bishopAttacks(to, occupancy) & diagonalSliders;
             }
+            if (attacker == Pieces.ROOK || attacker == Pieces.QUEEN) {
+                attackers |= Attacks.rookAttacks(to, occupancy) & straightSliders;
+            }
+            attackers &= occupancy;
+            onSquare = attacker;
+            side = side.opposite();
         }
 
-        return false;
+        while (--depth > 0) {
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+        }
+        return gains[0];
+    }
+
+    private long attackersTo(int square, long occupancy) {
+        long queens = pieceBitboards[Pieces.QUEEN.ordinal()];
+        return (Attacks.pawnAttacks(Color.WHITE, square) & getPieceBitboard(Color.BLACK, Pieces.PAWN))
+            | (Attacks.pawnAttacks(Color.BLACK, square) & getPieceBitboard(Color.WHITE, Pieces.PAWN))
+            | (Attacks.knightAttacks(square) & pieceBitboards[Pieces.KNIGHT.ordinal()])
+            | (Attacks.bishopAttacks(square, occupancy) & (pieceBitboards[Pieces.BISHOP.ordinal()] | queens))
+            | (Attacks.rookAttacks(square, occupancy) & (pieceBitboards[Pieces.ROOK.ordinal()] | queens))
+            | (Attacks.kingAttacks(square) & pieceBitboards[Pieces.KING.ordinal()]);
+    }
+
+    private boolean isSquareAttackedByColor(int rank, byte file, Color color) {
+        int square = rank * 8 + file;
+        long attackers = colorBitboards[color.ordinal()];
+        long occupancy = getOccupancy();
+        long queens = pieceBitboards[Pieces.QUEEN.ordinal()];
+
+        return (Attacks.pawnAttacks(color.opposite(), square) & pieceBitboards[Pieces.PAWN.ordinal()] & attackers) != 0
+            || (Attacks.knightAttacks(square) & pieceBitboards[Pieces.KNIGHT.ordinal()] & attackers) != 0
+            || (Attacks.bishopAttacks(square, occupancy) & (pieceBitboards[Pieces.BISHOP.ordinal()] | queens) & attackers) != 0
+            || (Attacks.rookAttacks(square, occupancy) & (pieceBitboards[Pieces.ROOK.ordinal()] | queens) & attackers) != 0
+            || (Attacks.kingAttacks(square) & pieceBitboards[Pieces.KING.ordinal()] & attackers) != 0;
     }
 
     private boolean isGameOver() {
-        return getAllLegalMoves().isEmpty();
+        return moveGenerator.generateLegalMoves(moveBuffer, 0) == 0;
     }
 
     public boolean isCheckMate() {
@@ -366,54 +804,48 @@ public class Board {
         return isGameOver() && !isKingInCheck(turn);
     }
 
+    // the current position has been on the board twice before
     public boolean isThreeFoldRepetition() {
-        for(String fen : positionCountMap.keySet()) {
-            if(positionCountMap.get(fen) >= 3) {
-                return true;
+        return isRepetition(Integer.MAX_VALUE);
+    }
+
+    /*
+     * keyHistory[i] is the key of the position move i was played in, a position with the side to move
+     * can only come back an even number of plies later and never across a capture, a pawn move or
+     * a null move, so the scan walks back over the halfmove clock and stops early at a null move
+     * a match at ply treeStart or later, inside the search tree, is a draw at once since the same moves
+     * can be played again, a match in the game before it has to be seen twice
+     */
+    private boolean isRepetition(int treeStart) {
+        int count = 0;
+        int end = Math.max(0, ply - halfmoveClock);
+        for (int i = ply - 1; i >= end; i--) {
+            if (playedMoves[i] == PackedMove.NONE) {
+                return false;
+            }
+            if (((ply - i) & 1) == 0 && keyHistory[i] == zobristKey) {
+                if (i >= treeStart || ++count == 2) {
+                    return true;
+                }
             }
         }
         return false;
     }
 
     public boolean onlyKingsLeftOnBoard() {
-        for(int i = 0; i < 8; i++) {
-            for(int j = 0; j < 8; j++) {
-                if(board[i].getPiece((byte) j) != Pieces.KING && board[i].getPiece((byte) j) != Pieces.NONE) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return material[0] == 0 && material[1] == 0;
     }
 
     public boolean fiftyMoveRule() {
-        if(moveHistory.size() < 100) {
-            return false;
-        }
-
-        for(int i = moveHistory.size() - 1; i >= moveHistory.size() - 100; i--) {
-            Move move = moveHistory.get(i);
-            if(move.isCapture || move instanceof PawnMove) {
-                return false;
-            }
-        }
-
-        return true;
+        return halfmoveClock >= 100;
     }
 
     public boolean isKingSideCastleAvailable(Color color) {
         int rank = color == Color.WHITE ? 0 : 7;
-        boolean movementCheck = (
-            color == Color.WHITE ? 
-                whiteKingFirstMove == -1 && whiteRookOnFileSevenFirstMove == -1 :
-                blackKingFirstMove == -1 && blackRookOnFileSevenFirstMove == -1
-        );
-        return board[rank].getPiece((byte) 4) == Pieces.KING 
+        // the right is only kept while the king and the rook are on their squares
+        return (castlingRights & (color == Color.WHITE ? WHITE_KING_SIDE : BLACK_KING_SIDE)) != 0
             && board[rank].getPiece((byte) 5) == Pieces.NONE 
             && board[rank].getPiece((byte) 6) == Pieces.NONE
-            && board[rank].getPiece((byte) 7) == Pieces.ROOK
-            && board[rank].getColor((byte) 7) == color
-            && movementCheck
             && !isSquareAttackedByColor(rank, (byte) 4, color.opposite())
             && !isSquareAttackedByColor(rank, (byte) 5, color.opposite())
             && !isSquareAttackedByColor(rank, (byte) 6, color.opposite())
@@ -422,18 +854,10 @@ public class Board {
 
     public boolean isQueenSideCastleAvailable(Color color) {
         int rank = color == Color.WHITE ? 0 : 7;
-        boolean movementCheck = (
-            color == Color.WHITE ? 
-                whiteKingFirstMove == -1 && whiteRookOnFileZeroFirstMove == -1 :
-                blackKingFirstMove == -1 && blackRookOnFileZeroFirstMove == -1
-        );
-        return board[rank].getPiece((byte) 4) == Pieces.KING 
+        return (castlingRights & (color == Color.WHITE ? WHITE_QUEEN_SIDE : BLACK_QUEEN_SIDE)) != 0
             && board[rank].getPiece((byte) 3) == Pieces.NONE 
             && board[rank].getPiece((byte) 2) == Pieces.NONE
             && board[rank].getPiece((byte) 1) == Pieces.NONE
-            && board[rank].getPiece((byte) 0) == Pieces.ROOK
-            && board[rank].getColor((byte) 0) == color
-            && movementCheck
             && !isSquareAttackedByColor(rank, (byte) 4, color.opposite())
             && !isSquareAttackedByColor(rank, (byte) 3, color.opposite())
             && !isSquareAttackedByColor(rank, (byte) 2, color.opposite())
@@ -442,89 +866,165 @@ public class Board {
     
     public byte makeMove(Move move) {
         moveHistory.add(move);
-        byte capturedPiece = Move.makeMove(board, move);
+        return makeMove(toPackedMove(move));
+    }
+
+    public void undoMove(Move move, byte capturedPiece) {
+        undoMove(toPackedMove(move));
+        moveHistory.remove(moveHistory.size() - 1);
+    }
+
+    public byte makeMove(int move) {
+        if(ply == playedMoves.length) {
+            keyHistory = Arrays.copyOf(keyHistory, ply * 2);
+            playedMoves = Arrays.copyOf(playedMoves, ply * 2);
+            movedPieces = Arrays.copyOf(movedPieces, ply * 2);
+            capturedPieces = Arrays.copyOf(capturedPieces, ply * 2);
+            irreversibleStates = Arrays.copyOf(irreversibleStates, ply * 2);
+        }
+        irreversibleStates[ply] = castlingRights | (enPassantSquare + 1) << 4 | halfmoveClock << 11;
+        keyHistory[ply] = zobristKey;
+        int castlingRightsBefore = castlingRights;
+        int enPassantFileBefore = getEnPassantFile();
+        int from = PackedMove.from(move);
+        Pieces movedPiece = pieceAt(from);
+        Color color = turn;
+
+        byte capturedPiece = applyMove(move);
+        playedMoves[ply] = move & PackedMove.MOVE_MASK;
+        movedPieces[ply] = (byte) movedPiece.ordinal();
+        capturedPieces[ply] = capturedPiece;
+        ply++;
         turn = turn.opposite();
 
-        if (move instanceof KingMove) {
-            if (((KingMove) move).getColor() == Color.WHITE && whiteKingFirstMove == -1) {
-                whiteKingFirstMove = moveHistory.size();
-            } else if (((KingMove) move).getColor() == Color.BLACK && blackKingFirstMove == -1) {
-                blackKingFirstMove = moveHistory.size();
-            }
-        }
-
-        if (move instanceof SlidingMove && ((SlidingMove) move).getPiece() == Pieces.ROOK) {
-            if (((SlidingMove) move).getColor() == Color.WHITE 
-                && move.fromFile == 0 
-                && whiteRookOnFileZeroFirstMove == -1
-            ) {
-                whiteRookOnFileZeroFirstMove = moveHistory.size();
-            } else if (((SlidingMove) move).getColor() == Color.WHITE
-                && move.fromFile == 7
-                && whiteRookOnFileSevenFirstMove == -1
-            ) {
-                whiteRookOnFileSevenFirstMove = moveHistory.size();
-            } else if (((SlidingMove) move).getColor() == Color.BLACK
-                && move.fromFile == 0
-                && blackRookOnFileZeroFirstMove == -1
-            ) {
-                blackRookOnFileZeroFirstMove = moveHistory.size();
-            } else if (((SlidingMove) move).getColor() == Color.BLACK
-                && move.fromFile == 7
-                && blackRookOnFileSevenFirstMove == -1
-            ) {
-                blackRookOnFileSevenFirstMove = moveHistory.size();
-            }
-        }
-
-        String fen = getFEN();
-        positionCountMap.put(fen, positionCountMap.getOrDefault(fen, 0) + 1);
+        int to = PackedMove.to(move);
+        castlingRights &= CASTLING_MASKS[from] & CASTLING_MASKS[to];
+        enPassantSquare = PackedMove.flags(move) == PackedMove.DOUBLE_PAWN_PUSH ? (from + to) >> 1 : -1;
+        halfmoveClock = movedPiece == Pieces.PAWN || (capturedPiece & 7) != 0 ? 0 : halfmoveClock + 1;
+
+        zobristKey = updateZobristKey(zobristKey, move, color, movedPiece, capturedPiece, castlingRightsBefore, enPassantFileBefore);
+        if(accumulator != null) {
+            updateAccumulator(move, color, movedPiece, capturedPiece, castlingRightsBefore, enPassantFileBefore);
+        }
 
         return capturedPiece;
     }
 
-    public void undoMove(Move move, byte capturedPiece) {
-        String fen = getFEN();
-        positionCountMap.put(fen, positionCountMap.get(fen) - 1);
-        if(positionCountMap.get(fen) == 0) {
-            positionCountMap.remove(fen);
-        }
-
-        if (move instanceof KingMove) {
-            if (((KingMove) move).getColor() == Color.WHITE && whiteKingFirstMove == moveHistory.size()) {
-                whiteKingFirstMove = -1;
-            } else if (((KingMove) move).getColor() == Color.BLACK && blackKingFirstMove == moveHistory.size()) {
-                blackKingFirstMove = -1;
-            }
-        }
-
-        if (move instanceof SlidingMove && ((SlidingMove) move).getPiece() == Pieces.ROOK) {
-            if (((SlidingMove) move).getColor() == Color.WHITE
-                && move.fromFile == 0
-                && whiteRookOnFileZeroFirstMove == moveHistory.size()
-            ) {
-                whiteRookOnFileZeroFirstMove = -1;
-            } else if (((SlidingMove) move).getColor() == Color.WHITE
-                && move.fromFile == 7
-                && whiteRookOnFileSevenFirstMove == moveHistory.size()
-            ) {
-                whiteRookOnFileSevenFirstMove = -1;
-            } else if (((SlidingMove) move).getColor() == Color.BLACK
-                && move.fromFile == 0
-                && blackRookOnFileZeroFirstMove == moveHistory.size()
-            ) {
-                blackRookOnFileZeroFirstMove = -1;
-            } else if (((SlidingMove) move).getColor() == Color.BLACK
-                && move.fromFile == 7
-                && blackRookOnFileSevenFirstMove == moveHistory.size()
-            ) {
-                blackRookOnFileSevenFirstMove = -1;
+    public void undoMove(int move) {
+        ply--;
+        turn = turn.opposite();
+        restoreIrreversibleState();
+        revertMove(move, capturedPieces[ply]);
+        zobristKey = keyHistory[ply];
+        if(accumulator != null && !accumulator.pop()) {
+            accumulator.refresh(this);
+        }
+    }
+
+    // passes the turn without moving, only for null move pruning inside the search
+    public void makeNullMove() {
+        if(ply == playedMoves.length) {
+            keyHistory = Arrays.copyOf(keyHistory, ply * 2);
+            playedMoves = Arrays.copyOf(playedMoves, ply * 2);
+            movedPieces = Arrays.copyOf(movedPieces, ply * 2);
+            capturedPieces = Arrays.copyOf(capturedPieces, ply * 2);
+            irreversibleStates = Arrays.copyOf(irreversibleStates, ply * 2);
+        }
+        irreversibleStates[ply] = castlingRights | (enPassantSquare + 1) << 4 | halfmoveClock << 11;
+        keyHistory[ply] = zobristKey;
+        int enPassantFileBefore = getEnPassantFile();
+        Color color = turn;
+
+        playedMoves[ply] = PackedMove.NONE;
+        movedPieces[ply] = (byte) Pieces.NONE.ordinal();
+        capturedPieces[ply] = 0;
+        ply++;
+        turn = turn.opposite();
+        enPassantSquare = -1;
+        halfmoveClock++;
+
+        zobristKey ^= Zobrist.sideToMove() ^ Zobrist.enPassant(enPassantFileBefore);
+        if(accumulator != null) {
+            if(color == Color.WHITE) {
+                accumulator.remove(NeuralNetwork.SIDE_TO_MOVE_FEATURE);
+            } else {
+                accumulator.add(NeuralNetwork.SIDE_TO_MOVE_FEATURE);
+            }
+            if(enPassantFileBefore != -1) {
+                accumulator.remove(NeuralNetwork.EN_PASSANT_FEATURE + enPassantFileBefore);
             }
+            accumulator.push();
         }
+    }
 
+    public void undoNullMove() {
+        ply--;
         turn = turn.opposite();
-        Move.undoMove(board, move, capturedPiece);
-        moveHistory.remove(moveHistory.size() - 1);
+        restoreIrreversibleState();
+        zobristKey = keyHistory[ply];
+        if(accumulator != null && !accumulator.pop()) {
+            accumulator.refresh(this);
+        }
+    }
+
+    private void restoreIrreversibleState() {
+        int state = irreversibleStates[ply];
+        castlingRights = state & ALL_CASTLING_RIGHTS;
+        enPassantSquare = ((state >> 4) & 0x7F) - 1;
+        halfmoveClock = state >>> 11;
+    }
+
+    // pieces other than pawns and the king, without them a null move can miss a zugzwang
+    public boolean hasNonPawnMaterial(Color color) {
+        return material[color.ordinal()] - pieceCounts[color.ordinal()][Pieces.PAWN.ordinal()] * Pieces.PAWN.getValue() > 0;
+    }
+
+    // same changes as updateZobristKey, expressed as NN inputs switched on and off
+    private void updateAccumulator(int move, Color color, Pieces movedPiece, byte capturedPiece, int castlingRightsBefore, int enPassantFileBefore) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        boolean white = color == Color.WHITE;
+
+        accumulator.remove(NeuralNetwork.pieceFeature(white, movedPiece.ordinal(), from));
+        accumulator.add(NeuralNetwork.pieceFeature(white, pieceAt(to).ordinal(), to));
+        if((capturedPiece & 7) != 0) {
+            accumulator.remove(NeuralNetwork.pieceFeature(!white, capturedPiece & 7, to));
+        }
+
+        int flags = PackedMove.flags(move);
+        int rook = Pieces.ROOK.ordinal();
+        if(flags == PackedMove.KING_SIDE_CASTLE) {
+            accumulator.remove(NeuralNetwork.pieceFeature(white, rook, from + 3));
+            accumulator.add(NeuralNetwork.pieceFeature(white, rook, from + 1));
+        } else if(flags == PackedMove.QUEEN_SIDE_CASTLE) {
+            accumulator.remove(NeuralNetwork.pieceFeature(white, rook, from - 4));
+            accumulator.add(NeuralNetwork.pieceFeature(white, rook, from - 1));
+        } else if(flags == PackedMove.EN_PASSANT) {
+            accumulator.remove(NeuralNetwork.pieceFeature(!white, Pieces.PAWN.ordinal(), (from & ~7) | (to & 7)));
+        }
+
+        if(white) {
+            accumulator.remove(NeuralNetwork.SIDE_TO_MOVE_FEATURE);
+        } else {
+            accumulator.add(NeuralNetwork.SIDE_TO_MOVE_FEATURE);
+        }
+
+        int lostCastlingRights = castlingRightsBefore & ~getCastlingRights();
+        for(int i = 0; i < 4; i++) {
+            if((lostCastlingRights & (1 << i)) != 0) {
+                accumulator.remove(NeuralNetwork.CASTLING_FEATURE + i);
+            }
+        }
+
+        int enPassantFile = getEnPassantFile();
+        if(enPassantFileBefore != -1) {
+            accumulator.remove(NeuralNetwork.EN_PASSANT_FEATURE + enPassantFileBefore);
+        }
+        if(enPassantFile != -1) {
+            accumulator.add(NeuralNetwork.EN_PASSANT_FEATURE + enPassantFile);
+        }
+
+        accumulator.push();
     }
 
     public Color getTurn() {
@@ -532,7 +1032,13 @@ public class Board {
     }
 
     public void setTurn(Color turn) {
+        if(this.turn != turn) {
+            zobristKey ^= Zobrist.sideToMove();
+        }
         this.turn = turn;
+        if(accumulator != null) {
+            accumulator.refresh(this);
+        }
     }
 
     public GameResult getWinner() {
@@ -564,156 +1070,475 @@ public class Board {
         }
     }
 
-    public double minimax(int depth, NeuralNetwork neuralNetwork, boolean maximizingPlayer, double alpha, double beta) {
-        String fen = getFEN();
+    public double search(int depth, NeuralNetwork neuralNetwork) {
+        getTranspositionTable().newSearch();
+        searchHistory.age();
+        return searchRoot(depth, neuralNetwork);
+    }
 
-        // 1. Lookup in TT
-        TTEntry entry = transpositionTable.get(fen);
-        if (entry != null && entry.depth >= depth) {
-            if (entry.flag == TTFlag.EXACT) return entry.score;
-            if (entry.flag == TTFlag.LOWERBOUND && entry.score >= beta) return entry.score;
-            if (entry.flag == TTFlag.UPPERBOUND && entry.score <= alpha) return entry.score;
+    /*
+     * search without aging the transposition table, used by helper threads that share it
+     * returns the score from white's view like minimax, getSearchScore has the side to move's
+     * from ASPIRATION_DEPTH on an iteration over the same position as the previous one starts with a
+     * window around the previous score and widens it on the failing side until the score falls inside
+     */
+    public double searchRoot(int depth, NeuralNetwork neuralNetwork) {
+        setNeuralNetwork(neuralNetwork);
+        rootPly = ply;
+        rootBestMove = PackedMove.NONE;
+        selectiveDepth = 0;
+        aborted = false;
+
+        int score;
+        if (depth >= ASPIRATION_DEPTH && lastRootKey == zobristKey && !Score.isMate(lastRootScore)) {
+            int delta = ASPIRATION_WINDOW;
+            int alpha = Math.max(-Score.INFINITE, lastRootScore - delta);
+            int beta = Math.min(Score.INFINITE, lastRootScore + delta);
+            while (true) {
+                score = negamax(depth, alpha, beta, neuralNetwork);
+                if (aborted) {
+                    break;
+                }
+                if (score <= alpha) {
+                    beta = (alpha + beta) / 2;
+                    alpha = Math.max(-Score.INFINITE, score - delta);
+                } else if (score >= beta) {
+                    beta = Math.min(Score.INFINITE, score + delta);
+                } else {
+                    break;
+                }
+                delta *= 2;
+            }
+        } else {
+            score = negamax(depth, -Score.INFINITE, Score.INFINITE, neuralNetwork);
         }
 
-        if (onlyKingsLeftOnBoard() || fiftyMoveRule() || isThreeFoldRepetition()) {
-            double evaluation = 0.0; // Default value Draw
-            return evaluation; // Draw
+        if (!aborted) {
+            lastRootKey = zobristKey;
+            lastRootScore = score;
         }
+        rootPly = -1;
+        return turn == Color.WHITE ? score : -score;
+    }
 
-        if (depth <= 0) {
-            double evaluation = neuralNetwork.evaluate(fen);
-            return evaluation;
+    // best move found at the root by the last search on this board, null if it found none
+    public Move getSearchBestMove() {
+        return rootBestMove == PackedMove.NONE ? getBestMove() : toMove(rootBestMove);
+    }
+
+    // score of the last completed root search from the side to move's view, see Score
+    public int getSearchScore() {
+        return lastRootScore;
+    }
+
+    // principal variation of the last root search as packed moves, starting with the best move
+    public int[] getPrincipalVariation() {
+        return Arrays.copyOf(pvTable[0], pvLength[0]);
+    }
+
+    public SearchHistory getSearchHistory() {
+        return searchHistory;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public void resetNodes() {
+        nodes = 0;
+    }
+
+    // asks a running search on this board to return as soon as possible, may be called from any thread
+    public void requestStop() {
+        stopRequested = true;
+    }
+
+    public boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    public void clearStop() {
+        stopRequested = false;
+    }
+
+    // a running search aborts once it has searched nodeLimit nodes (0 for no limit)
+    // or once System.nanoTime() passes deadlineNanos (NO_DEADLINE for none)
+    public void setStopConditions(long nodeLimit, long deadlineNanos) {
+        this.nodeLimit = nodeLimit > 0 ? nodeLimit : Long.MAX_VALUE;
+        this.deadline = deadlineNanos;
+        this.hasDeadline = deadlineNanos != NO_DEADLINE;
+    }
+
+    public void clearStopConditions() {
+        nodeLimit = Long.MAX_VALUE;
+        hasDeadline = false;
+    }
+
+    // only called every STOP_CHECK_INTERVAL nodes so the clock is read rarely
+    private boolean shouldStop() {
+        return stopRequested || nodes >= nodeLimit || (hasDeadline && System.nanoTime() - deadline >= 0);
+    }
+
+    // true when the last search returned early because of requestStop, its score is then meaningless
+    public boolean wasAborted() {
+        return aborted;
+    }
+
+    // white's view interface over negamax, alpha and beta may be infinite, mates come back as +-(Score.MATE - plies)
+    public double minimax(int depth, NeuralNetwork neuralNetwork, boolean maximizingPlayer, double alpha, double beta) {
+        boolean root = rootPly == -1;
+        if (root) {
+            rootPly = ply;
+        }
+        int sign = maximizingPlayer ? 1 : -1;
+        int lower = Score.fromBound(maximizingPlayer ? alpha : -beta);
+        int upper = Score.fromBound(maximizingPlayer ? beta : -alpha);
+        int score = negamax(depth, lower, upper, neuralNetwork);
+        if (root) {
+            rootPly = -1;
+        }
+        return sign * score;
+    }
+
+    /*
+     * principal variation search: the first move of a node gets the full window, the others a null window
+     * around alpha that only proves they are worse, a move that fails high there is searched again with
+     * the full window, so only nodes with beta - alpha > 1 (pv nodes) may return exact scores
+     * pv nodes do not take transposition table cutoffs so the triangular pv table keeps a complete line:
+     * pvTable[height] holds the best line from height on, built from the child's line on every new best move
+     */
+    private int negamax(int depth, int alpha, int beta, NeuralNetwork neuralNetwork) {
+        int height = ply - rootPly;
+        pvLength[height] = height;
+        if ((++nodes & (STOP_CHECK_INTERVAL - 1)) == 0 && shouldStop()) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (height > selectiveDepth) {
+            selectiveDepth = height;
         }
 
-        List<Move> moves = getAllLegalMoves();
-        orderMoves(moves);
-        if (moves.isEmpty()) {
-            double evaluation = 0.0; // Default value Stalemate
-            if (isKingInCheck(turn)) {
-                evaluation = (turn == Color.WHITE) ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY; // Checkmate
+        boolean pvNode = beta - alpha > 1;
+        if (height > 0) {
+            if (onlyKingsLeftOnBoard() || fiftyMoveRule() || isRepetition(rootPly)) {
+                return Score.DRAW;
+            }
+            if (height >= MAX_PLY - 1) {
+                return Score.fromEvaluation(sideToMoveEvaluation(neuralNetwork));
             }
 
-            return evaluation;
+            // mate distance pruning, no line from here can beat a shorter mate already found
+            alpha = Math.max(alpha, Score.matedIn(height));
+            beta = Math.min(beta, Score.mateIn(height + 1));
+            if (alpha >= beta) {
+                return alpha;
+            }
         }
 
-        // Order moves: try TT best move first if exists
-        if (entry != null && entry.bestMove != null) {
-            moves.remove(entry.bestMove);
-            moves.add(0, entry.bestMove);
-        }
+        TranspositionTable transpositionTable = getTranspositionTable();
+        long key = zobristKey;
 
-        double bestValue = maximizingPlayer ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
-        Move bestMove = null;
-        double alphaOrginal = alpha;
-        double betaOrginal = beta;
-        for (Move move : moves) {
-            byte capturedPiece = makeMove(move);
+        long entry = transpositionTable.probe(key);
+        if (entry != 0 && !pvNode && TranspositionTable.depth(entry) >= depth) {
+            int score = Score.fromTable(TranspositionTable.score(entry), height);
+            TTFlag entryFlag = TranspositionTable.flag(entry);
+            if (entryFlag == TTFlag.EXACT) return score;
+            if (entryFlag == TTFlag.LOWERBOUND && score >= beta) return score;
+            if (entryFlag == TTFlag.UPPERBOUND && score <= alpha) return score;
+        }
 
-            int newDepth = depth - 1;
-            double result = minimax(newDepth, neuralNetwork, !maximizingPlayer, alpha, beta);
-            double value = result;
-            undoMove(move, capturedPiece);
+        if (depth <= 0) {
+            return quiescence(alpha, beta, 0, neuralNetwork);
+        }
 
-            if (maximizingPlayer) {
-                if (value > bestValue) {
-                    bestValue = value;
-                    bestMove = move;
+        boolean inCheck = isKingInCheck(turn);
+
+        // null move pruning: if passing still fails high, a real move will too, reduced by R plies
+        // R grows with depth and with the margin of the evaluation over beta
+        // not in check, not twice in a row and not without pieces, where passing may be the only good move
+        if (!pvNode && !inCheck && depth >= NULL_MOVE_DEPTH && height > 0
+                && playedMoves[ply - 1] != PackedMove.NONE
+                && !Score.isMate(beta)
+                && hasNonPawnMaterial(turn)) {
+            int staticScore = Score.fromEvaluation(sideToMoveEvaluation(neuralNetwork));
+            if (staticScore >= beta) {
+                int reduction = 3 + depth / 4 + Math.min(2, (staticScore - beta) / NULL_MOVE_EVAL_MARGIN);
+                makeNullMove();
+                int value = -negamax(depth - 1 - reduction, -beta, -beta + 1, neuralNetwork);
+                undoNullMove();
+                if (aborted) {
+                    return 0;
                 }
-                alpha = Math.max(alpha, bestValue);
+                if (value >= beta) {
+                    // a mate found after passing is not proven
+                    return Score.isMate(value) ? beta : value;
+                }
+            }
+        }
+
+        int hashMove = entry != 0 ? TranspositionTable.move(entry) : PackedMove.NONE;
+        int previousMove = height > 0 ? playedMoves[ply - 1] : PackedMove.NONE;
+        Pieces previousPiece = previousMove != PackedMove.NONE ? PIECES[movedPieces[ply - 1]] : Pieces.NONE;
+        int previousTo = PackedMove.to(previousMove);
+
+        if (batchedLeaves && depth == 1) {
+            prefetchFrontier(neuralNetwork);
+        }
+
+        MovePicker picker = movePicker(height);
+        picker.reset(hashMove, height, previousPiece, previousTo);
+        int[] quiets = searchedQuiets[height];
+        int quietCount = 0;
+        int moveCount = 0;
+        int bestValue = -Score.INFINITE;
+        int bestMove = PackedMove.NONE;
+        int alphaOriginal = alpha;
+        int move;
+        while ((move = picker.next()) != PackedMove.NONE) {
+            makeMove(move);
+
+            int value;
+            int moveNumber = moveCount++;
+            if (moveNumber == 0) {
+                value = -negamax(depth - 1, -beta, -alpha, neuralNetwork);
             } else {
-                if (value < bestValue) {
-                    bestValue = value;
-                    bestMove = move;
+                // late move reductions: quiet moves and captures losing material by static exchange
+                // far down the ordering are searched shallower first and only get the full depth back if they beat alpha
+                int reduction = 0;
+                if (depth >= LMR_DEPTH && moveNumber >= LMR_MOVE_NUMBER && !inCheck && !PackedMove.givesCheck(move)
+                        && (isQuiet(move) || picker.isLosingCapture())) {
+                    reduction = LMR_REDUCTIONS[Math.min(depth, 63)][Math.min(moveNumber, 63)];
+                    if (pvNode) {
+                        reduction--;
+                    }
+                    reduction = Math.max(0, Math.min(reduction, depth - 2));
+                }
+
+                value = -negamax(depth - 1 - reduction, -alpha - 1, -alpha, neuralNetwork);
+                if (reduction > 0 && value > alpha) {
+                    value = -negamax(depth - 1, -alpha - 1, -alpha, neuralNetwork);
+                }
+                if (value > alpha && value < beta) {
+                    value = -negamax(depth - 1, -beta, -alpha, neuralNetwork);
                 }
-                beta = Math.min(beta, bestValue);
+            }
+            undoMove(move);
+            if (aborted) {
+                return 0;
             }
 
-            if (beta <= alpha) {
-                if(bestMove == null) {
-                    bestMove = move;
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = move;
+                if (value > alpha) {
+                    alpha = value;
+                    updatePrincipalVariation(height, move);
+                    if (alpha >= beta) {
+                        if (isQuiet(move)) {
+                            updateQuietHistory(move, quiets, quietCount, depth, height, previousPiece, previousTo);
+                        }
+                        break;
+                    }
                 }
-                break; // Alpha-Beta cutoff
             }
+            if (isQuiet(move)) {
+                quiets[quietCount++] = move;
+            }
+        }
+
+        if (moveCount == 0) {
+            return inCheck ? Score.matedIn(height) : Score.DRAW;
         }
 
-        // 3. Save in TT
         TTFlag flag;
-        if (bestValue <= alphaOrginal) flag = TTFlag.UPPERBOUND;
-        else if (bestValue >= betaOrginal) flag = TTFlag.LOWERBOUND;
+        if (bestValue <= alphaOriginal) flag = TTFlag.UPPERBOUND;
+        else if (bestValue >= beta) flag = TTFlag.LOWERBOUND;
         else flag = TTFlag.EXACT;
-        transpositionTable.put(fen, new TTEntry(fen, bestValue, depth, flag, bestMove));
-        
+        transpositionTable.store(key, Score.toTable(bestValue, height), depth, flag, bestMove & PackedMove.MOVE_MASK);
+        if (height == 0) {
+            rootBestMove = bestMove;
+        }
+
         return bestValue;
     }
 
-    private void orderMoves(List<Move> moves) {
-        moves.sort((move1, move2) -> {
-            // Captures first
-            if (move1.isCapture != move2.isCapture) {
-                return move1.isCapture ? -1 : 1;
-            }
-            // Checks next
-            if (move1.isKingInCheck != move2.isKingInCheck) {
-                return move1.isKingInCheck ? -1 : 1;
-            }
-            // Promotions next
-            boolean isPromotion1 = move1 instanceof PawnMove && ((PawnMove) move1).isPromotion();
-            boolean isPromotion2 = move2 instanceof PawnMove && ((PawnMove) move2).isPromotion();
-            if (isPromotion1 != isPromotion2) {
-                return isPromotion1 ? -1 : 1;
-            }
-            // en passant captures next
-            boolean isEnPassant1 = move1 instanceof PawnMove && ((PawnMove) move1).isEnPassant();
-            boolean isEnPassant2 = move2 instanceof PawnMove && ((PawnMove) move2).isEnPassant();
-            if (isEnPassant1 != isEnPassant2) {
-                return isEnPassant1 ? -1 : 1;
-            }
-            // Castling next
-            boolean isCastle1 = move1 instanceof KingMove && ((KingMove) move1).isCastlingMove();
-            boolean isCastle2 = move2 instanceof KingMove && ((KingMove) move2).isCastlingMove();
-            if (isCastle1 != isCastle2) {
-                return isCastle1 ? -1 : 1;
-            }
-            // Higher value piece moves first (for SlidingMove)
-            int value1 = (move1 instanceof SlidingMove) ? ((SlidingMove) move1).getPiece().getValue() : 0;
-            int value2 = (move2 instanceof SlidingMove) ? ((SlidingMove) move2).getPiece().getValue() : 0;
-            if (value1 != value2) {
-                return Integer.compare(value2, value1);
-            }
-            // Otherwise, maintain original order
-            return 0;
-        });
+    private void updatePrincipalVariation(int height, int move) {
+        int[] line = pvTable[height];
+        line[height] = move & PackedMove.MOVE_MASK;
+        int childLength = pvLength[height + 1];
+        System.arraycopy(pvTable[height + 1], height + 1, line, height + 1, childLength - (height + 1));
+        pvLength[height] = Math.max(height + 1, childLength);
     }
 
-    public Move getBestMove() {
-        Move bestMove = transpositionTable.get(getFEN()).bestMove;
-        return bestMove;
+    private double sideToMoveEvaluation(NeuralNetwork neuralNetwork) {
+        double evaluation = evaluate(neuralNetwork);
+        return turn == Color.WHITE ? evaluation : -evaluation;
     }
 
-    public int getDepthExtensionWithPhase(int maxDepth) {
-        double maxPhase = 24.0;
-        double phase = maxPhase;
+    /*
+     * quiescence search below the horizon: the side to move either stands pat on the static
+     * evaluation or tries its captures and promotions, so only quiet positions get scored
+     * a side in check on the first quiescence ply searches every evasion instead of standing pat,
+     * deeper down checks are ignored so the search stays small
+     * captures that cannot lift the score to alpha even with DELTA_MARGIN are skipped (delta pruning),
+     * captures that lose material are not even returned by the move picker
+     */
+    private int quiescence(int alpha, int beta, int quiescencePly, NeuralNetwork neuralNetwork) {
+        int height = ply - rootPly;
+        pvLength[height] = height;
+        if ((++nodes & (STOP_CHECK_INTERVAL - 1)) == 0 && shouldStop()) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (height > selectiveDepth) {
+            selectiveDepth = height;
+        }
+        if (onlyKingsLeftOnBoard()) {
+            return Score.DRAW;
+        }
 
-        // Assign piece phase values
-        phase -= getNumberOfPiecesOnBoard(Pieces.KNIGHT) * 1;
-        phase -= getNumberOfPiecesOnBoard(Pieces.BISHOP) * 1;
-        phase -= getNumberOfPiecesOnBoard(Pieces.ROOK)   * 2;
-        phase -= getNumberOfPiecesOnBoard(Pieces.QUEEN)  * 4;
+        if (height >= MAX_PLY - 1) {
+            return Score.fromEvaluation(sideToMoveEvaluation(neuralNetwork));
+        }
 
-        // Normalize phase between 1 (endgame) and 0 (opening)
-        double gamePhase = (double)phase / maxPhase;
-        return (int) Math.floor(maxDepth + 3 * gamePhase);
+        boolean inCheck = quiescencePly == 0 && isKingInCheck(turn);
+        int standPat = 0;
+        int bestValue;
+        MovePicker picker = movePicker(height);
+        if (inCheck) {
+            bestValue = -Score.INFINITE;
+            picker.reset(PackedMove.NONE, height, Pieces.NONE, 0);
+        } else {
+            standPat = Score.fromEvaluation(sideToMoveEvaluation(neuralNetwork));
+            if (standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+            bestValue = standPat;
+            picker.resetCaptures();
+        }
+
+        int moveCount = 0;
+        int move;
+        while ((move = picker.next()) != PackedMove.NONE) {
+            moveCount++;
+            if (!inCheck && PackedMove.isCapture(move) && !PackedMove.isPromotion(move)) {
+                int victim = PackedMove.isEnPassant(move) ? Pieces.PAWN.getValue() : pieceAt(PackedMove.to(move)).getValue();
+                if (standPat + victim + DELTA_MARGIN <= alpha) {
+                    continue;
+                }
+            }
+
+            makeMove(move);
+            int value = -quiescence(-beta, -alpha, quiescencePly + 1, neuralNetwork);
+            undoMove(move);
+            if (aborted) {
+                return 0;
+            }
+
+            if (value > bestValue) {
+                bestValue = value;
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (inCheck && moveCount == 0) {
+            return Score.matedIn(height);
+        }
+        return bestValue;
     }
 
-    private int getNumberOfPiecesOnBoard(Pieces piece) {
+    /*
+     * batched leaves: the static evaluation of every child of a depth 1 node is computed in one
+     * network batch and put in the eval cache, the children are then searched as usual and find
+     * their stand pat score there, draws and positions already cached are left out of the batch
+     */
+    private void prefetchFrontier(NeuralNetwork neuralNetwork) {
+        EvalCache cache = getEvalCache();
+        if (cache == null) {
+            return;
+        }
+        Accumulator accumulator = getAccumulator(neuralNetwork);
+        if (evalBatch == null || evalBatch.getNetwork() != neuralNetwork) {
+            evalBatch = neuralNetwork.newBatch(MAX_MOVES);
+        }
+        evalBatch.clear();
+
+        int end = moveGenerator.generateLegalMoves(moveBuffer, 0);
         int count = 0;
-        for (byte i = 0; i < 8; i++) {
-            for (byte j = 0; j < 8; j++) {
-                if (board[i].getPiece(j) == piece) {
-                    count++;
-                }
+        for (int i = 0; i < end; i++) {
+            int move = moveBuffer[i];
+            makeMove(move);
+            if (!onlyKingsLeftOnBoard() && !fiftyMoveRule() && !isRepetition(rootPly) && cache.probe(zobristKey) == 0) {
+                frontierKeys[count++] = zobristKey;
+                evalBatch.add(accumulator);
+            }
+            undoMove(move);
+        }
+
+        if (count == 0) {
+            return;
+        }
+        neuralNetwork.evaluateBatch(evalBatch, batchScores);
+        for (int i = 0; i < count; i++) {
+            cache.store(frontierKeys[i], batchScores[i]);
+        }
+    }
+
+    private MovePicker movePicker(int height) {
+        if (movePickers[height] == null) {
+            movePickers[height] = new MovePicker(this, searchHistory);
+        }
+        return movePickers[height];
+    }
+
+    private static boolean isQuiet(int move) {
+        return !PackedMove.isCapture(move) && !PackedMove.isPromotion(move);
+    }
+
+    // the quiet cutoff move failed high, the quiet moves searched before it did not
+    private void updateQuietHistory(int cutoff, int[] quiets, int quietCount, int depth, int height, Pieces previousPiece, int previousTo) {
+        searchHistory.addCutoff(turn, height, cutoff, previousPiece, previousTo, depth);
+        for (int i = 0; i < quietCount; i++) {
+            searchHistory.addFailure(turn, quiets[i], depth);
+        }
+    }
+
+    public Move getBestMove() {
+        long entry = getTranspositionTable().probe(zobristKey);
+        int bestMove = entry != 0 ? TranspositionTable.move(entry) : PackedMove.NONE;
+        if (bestMove == PackedMove.NONE) {
+            return null;
+        }
+
+        int end = moveGenerator.generateLegalMoves(moveBuffer, 0);
+        for (int i = 0; i < end; i++) {
+            if (PackedMove.sameMove(moveBuffer[i], bestMove)) {
+                return toMove(moveBuffer[i]);
             }
         }
-        return count;
+        return null;
+    }
+
+    // deepest ply below the root reached by the last search on this board
+    public int getSelectiveDepth() {
+        return selectiveDepth;
+    }
+
+    public int getDepthExtensionWithPhase(int maxDepth) {
+        double maxPhase = MAX_PHASE;
+        double phase = maxPhase - this.phase;
+
+        // Normalize phase between 1 (endgame) and 0 (opening)
+        double gamePhase = (double)phase / maxPhase;
+        return (int) Math.floor(maxDepth + 3 * gamePhase);
     }
 }
@@ -1,6 +1,10 @@
 package com.example.chess.model;
 
 public class BoardRow {
+    // values() clones the enum array on every call, so keep one copy around
+    private static final Color[] COLORS = Color.values();
+    private static final Pieces[] PIECES = Pieces.values();
+
     private int row = 0;
 
     public BoardRow(int row) {
@@ -40,13 +44,13 @@ public class BoardRow {
     public Color getColor(byte file) {
         int square = (row >> (4 * (7 - file)));
         int color = (square >> 3) & 1;
-        return Color.values()[color];
+        return COLORS[color];
     }
 
     public Pieces getPiece(byte file) {
         int square = (row >> (4 * (7 - file)));
         int piece = square & 7;
-        return Pieces.values()[piece];
+        return PIECES[piece];
     }
 
     public byte getFile(byte file) {
@@ -75,8 +79,8 @@ public class BoardRow {
     }
 
     public void setFile(byte file, byte newFileValue) {
-        setColor(file, Color.values()[(newFileValue >> 3) & 1]);
-        setPiece(file, Pieces.values()[newFileValue & 7]);
+        setColor(file, COLORS[(newFileValue >> 3) & 1]);
+        setPiece(file, PIECES[newFileValue & 7]);
     }
 
     public boolean isEmpty(byte file) {
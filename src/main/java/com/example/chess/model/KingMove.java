@@ -1,10 +1,5 @@
 package com.example.chess.model;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import com.example.chess.utils.Utilities;
-
 public class KingMove extends Move {
     private final int castleFile;
     private static final int kingSideCastleFile = 6;
@@ -42,33 +37,6 @@ public class KingMove extends Move {
         return -1;
     }
 
-    public static List<KingMove> getPossibleMoves(Board board, int rank, byte file) {
-        List<KingMove> moves = new ArrayList<>();
-        Color color = board.getBoardRow(rank).getColor(file);
-        int[][] directions = Pieces.KING.getDirections(color);
-
-        for(int i = 0; i < 8; i++) {
-            int newRank = rank + directions[i][0];
-            byte newFile = (byte) (file + directions[i][1]);
-            boolean isCapture = Utilities.isOnBoard(newRank, newFile) 
-                && !board.getBoardRow(newRank).isEmpty(newFile) 
-                && board.getBoardRow(newRank).getColor(newFile) == color.opposite();
-
-            if(Utilities.isOnBoard(newRank, newFile) && (board.getBoardRow(newRank).isEmpty(newFile) || isCapture)) {
-                moves.add(new KingMove(color, rank, file, newRank, newFile, isCapture));
-            }
-        }
-
-        if(board.isKingSideCastleAvailable(color)) {
-            moves.add(new KingMove(color, rank, file, rank, (byte) 6, false, kingSideCastleFile));
-        }
-        if(board.isQueenSideCastleAvailable(color)) {
-            moves.add(new KingMove(color, rank, file, rank, (byte) 2, false, queenSideCastleFile));
-        }
-
-        return moves;
-    }
-
     @Override
     public String toString() {
         return (
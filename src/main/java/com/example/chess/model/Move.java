@@ -107,8 +107,14 @@ public class Move {
             return null;
         }
         
+        // the fifth character picks the promotion piece, e7e8n
+        String promotion = moveTokens.length > 4 ? moveTokens[4].toUpperCase() : Pieces.QUEEN.getSymbol();
         List<Move> possibleMoves = board.getLegalMoves(fromRank, fromFile);
-        Move move = possibleMoves.stream().filter(m -> m.getToFile() == toFile && m.getToRank() == toRank).findFirst().orElse(null);
+        Move move = possibleMoves.stream()
+            .filter(m -> m.getToFile() == toFile && m.getToRank() == toRank)
+            .filter(m -> !(m instanceof PawnMove) || !((PawnMove) m).isPromotion()
+                || ((PawnMove) m).getPromotedPiece().getSymbol().equals(promotion))
+            .findFirst().orElse(null);
         return move;
     }
 
@@ -119,97 +125,4 @@ public class Move {
             squareToString(toRank, toFile) + 
             (isCheckmate ? "#" : isKingInCheck ? "+" : "");
     }
-
-    public static byte makeMove(BoardRow[] board, Move move) {
-        byte fromRank = (byte) move.getFromRank();
-        byte fromFile = (byte) move.getFromFile();
-        byte toRank = (byte) move.getToRank();
-        byte toFile = (byte) move.getToFile();
-        
-        byte capturedPiece = board[toRank].getFile(toFile);
-        board[toRank].setFile(
-            toFile,
-            board[fromRank].getColor(fromFile),
-            board[fromRank].getPiece(fromFile)
-        );
-        board[fromRank].setFile(
-            fromFile,
-            (byte) 0
-        );
-
-        if(move instanceof KingMove && ((KingMove) move).isCastlingMove()) {
-            byte rookFileIndex = (byte) ((KingMove) move).rookFileForCastle();
-            byte afterCastleRookFileIndex = (byte) ((KingMove) move).moveRookToFileAfterCastle();
-
-            board[toRank].setFile(
-                afterCastleRookFileIndex,
-                board[fromRank].getColor(rookFileIndex),
-                board[fromRank].getPiece(rookFileIndex)
-            );
-            board[fromRank].setFile(
-                rookFileIndex,
-                (byte) 0
-            );
-        } else if (move instanceof PawnMove && ((PawnMove) move).isEnPassant()) {
-            board[fromRank].setFile(
-                toFile,
-                (byte) 0
-            );
-        } else if (move instanceof PawnMove && ((PawnMove) move).isPromotion()) {
-            board[toRank].setFile(
-                toFile,
-                board[toRank].getColor(toFile), 
-                ((PawnMove) move).getPromotedPiece()
-            );
-        }
-
-        return capturedPiece;
-    }
-
-    public static void undoMove(BoardRow[] board, Move move, byte capturedPiece) {
-        byte fromRank = (byte) move.getFromRank();
-        byte fromFile = (byte) move.getFromFile();
-        byte toRank = (byte) move.getToRank();
-        byte toFile = (byte) move.getToFile();
-        
-        board[fromRank].setFile(
-            fromFile,
-            board[toRank].getColor(toFile),
-            board[toRank].getPiece(toFile)
-        );
-        board[toRank].setFile(
-            toFile,
-            capturedPiece
-        );
-
-        Color color = move.getColor();
-                
-        if(move instanceof KingMove && ((KingMove) move).isCastlingMove()) {
-            byte rookFileIndex = (byte) ((KingMove) move).rookFileForCastle();
-            byte afterCastleRookFileIndex = (byte) ((KingMove) move).moveRookToFileAfterCastle();
-
-            board[fromRank].setFile(
-                rookFileIndex,
-                board[toRank].getColor(afterCastleRookFileIndex),
-                board[toRank].getPiece(afterCastleRookFileIndex)
-            );
-            board[toRank].setFile(
-                afterCastleRookFileIndex,
-                (byte) 0
-            );
-        } else if (move instanceof PawnMove && ((PawnMove) move).isEnPassant()) {
-            board[fromRank].setFile(
-                toFile,
-                color.opposite(),
-                Pieces.PAWN
-            );
-        } else if (move instanceof PawnMove && ((PawnMove) move).isPromotion()) {
-            board[fromRank].setFile(
-                fromFile,
-                color,
-                Pieces.PAWN
-            );
-        }
-    }
-
 }
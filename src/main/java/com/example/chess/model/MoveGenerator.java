@@ -0,0 +1,336 @@
+package com.example.chess.model;
+
+import java.util.Arrays;
+
+public class MoveGenerator {
+    /*
+     * legal move generation, state is computed once per position:
+     * checkers - enemy pieces attacking our king, with two of them only the king may move
+     * check mask - squares a non-king move has to land on: the checker and the squares between it and the king
+     * pinned - own pieces that may only move along the line through the king and the pinning slider
+     * king moves are tested against the enemy attacks with the king lifted off the board,
+     * en passant is replayed on the occupancy since it clears two squares of one rank
+     *
+     * gives-check uses the squares from which each piece type attacks the enemy king
+     * plus the own pieces whose move uncovers a slider (discoverers)
+     *
+     * moves are written as PackedMove ints into a caller-owned buffer, nothing is allocated
+     *
+     * for staged generation the position state is set up once by initialize and then reused by
+     * generateCaptures (captures, en passant and promotions), generateQuiets (everything else) and
+     * legalMove, the board has to be back in the same position whenever one of them is called
+     */
+
+    private static final Pieces[] PROMOTIONS = {Pieces.QUEEN, Pieces.BISHOP, Pieces.ROOK, Pieces.KNIGHT};
+    // queen in the middle of an empty board, or a pawn with three promoting targets
+    private static final int MAX_MOVES_FROM_SQUARE = 32;
+
+    private final Board board;
+    private final long[] checkSquares = new long[7];
+
+    private final int[] squareMoves = new int[MAX_MOVES_FROM_SQUARE];
+    private int[] moves;
+    private int count;
+    private boolean noisy;
+    private boolean quiet;
+    private long sources;
+
+    private Color us;
+    private Color them;
+    private long own;
+    private long enemies;
+    private long occupancy;
+    private int kingSquare;
+    private long checkers;
+    private long checkMask;
+    private long pinned;
+    private int enemyKingSquare;
+    private long discoverers;
+
+    public MoveGenerator(Board board) {
+        this.board = board;
+    }
+
+    // writes the legal moves to moves starting at offset, returns the index after the last one
+    public int generateLegalMoves(int[] moves, int offset) {
+        initialize();
+        return generate(moves, offset, true, true, -1L);
+    }
+
+    // legal captures, en passant and promotions of the initialized position
+    public int generateCaptures(int[] moves, int offset) {
+        return generate(moves, offset, true, false, -1L);
+    }
+
+    // legal moves of the initialized position that generateCaptures leaves out, castling included
+    public int generateQuiets(int[] moves, int offset) {
+        return generate(moves, offset, false, true, -1L);
+    }
+
+    // the legal move of the initialized position with the same from, to and flags as move, with its
+    // check annotation, or PackedMove.NONE, for moves taken from the transposition table or a killer slot
+    public int legalMove(int move) {
+        int from = PackedMove.from(move);
+        if (move == PackedMove.NONE || (own & (1L << from)) == 0 || (own & (1L << PackedMove.to(move))) != 0) {
+            return PackedMove.NONE;
+        }
+
+        int end = generate(squareMoves, 0, true, true, 1L << from);
+        for (int i = 0; i < end; i++) {
+            if (PackedMove.sameMove(squareMoves[i], move)) {
+                return squareMoves[i];
+            }
+        }
+        return PackedMove.NONE;
+    }
+
+    private int generate(int[] moves, int offset, boolean noisy, boolean quiet, long sources) {
+        this.moves = moves;
+        this.count = offset;
+        this.noisy = noisy;
+        this.quiet = quiet;
+        this.sources = sources;
+
+        if ((sources & (1L << kingSquare)) != 0) {
+            generateKingMoves();
+        }
+        if (Long.bitCount(checkers) <= 1) {
+            generatePawnMoves();
+            generatePieceMoves(Pieces.KNIGHT);
+            generatePieceMoves(Pieces.BISHOP);
+            generatePieceMoves(Pieces.ROOK);
+            generatePieceMoves(Pieces.QUEEN);
+        }
+
+        this.moves = null;
+        return count;
+    }
+
+    // squares a piece move may land on in the current mode
+    private long targetMask() {
+        return (noisy ? enemies : 0L) | (quiet ? ~occupancy : 0L);
+    }
+
+    private void add(int move, boolean givesCheck) {
+        moves[count++] = givesCheck ? move | PackedMove.GIVES_CHECK : move;
+    }
+
+    public void initialize() {
+        us = board.getTurn();
+        them = us.opposite();
+        own = board.getColorBitboard(us);
+        enemies = board.getColorBitboard(them);
+        occupancy = own | enemies;
+        kingSquare = board.getKingSquare(us);
+
+        checkers = attackersTo(kingSquare, occupancy) & enemies;
+        if (checkers == 0) {
+            checkMask = -1L;
+        } else {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            checkMask = Attacks.between(kingSquare, checker) | checkers;
+        }
+        pinned = blockers(kingSquare, enemies) & own;
+
+        enemyKingSquare = board.getKingSquare(them);
+        if (enemyKingSquare == -1) {
+            Arrays.fill(checkSquares, 0L);
+            discoverers = 0L;
+        } else {
+            checkSquares[Pieces.PAWN.ordinal()] = Attacks.pawnAttacks(them, enemyKingSquare);
+            checkSquares[Pieces.KNIGHT.ordinal()] = Attacks.knightAttacks(enemyKingSquare);
+            checkSquares[Pieces.BISHOP.ordinal()] = Attacks.bishopAttacks(enemyKingSquare, occupancy);
+            checkSquares[Pieces.ROOK.ordinal()] = Attacks.rookAttacks(enemyKingSquare, occupancy);
+            checkSquares[Pieces.QUEEN.ordinal()] = checkSquares[Pieces.BISHOP.ordinal()] | checkSquares[Pieces.ROOK.ordinal()];
+            checkSquares[Pieces.KING.ordinal()] = 0L;
+            discoverers = blockers(enemyKingSquare, own) & own;
+        }
+    }
+
+    private long attackersTo(int square, long occupancy) {
+        long queens = board.getPieceBitboard(Pieces.QUEEN);
+        return (Attacks.pawnAttacks(Color.WHITE, square) & board.getPieceBitboard(Color.BLACK, Pieces.PAWN))
+            | (Attacks.pawnAttacks(Color.BLACK, square) & board.getPieceBitboard(Color.WHITE, Pieces.PAWN))
+            | (Attacks.knightAttacks(square) & board.getPieceBitboard(Pieces.KNIGHT))
+            | (Attacks.bishopAttacks(square, occupancy) & (board.getPieceBitboard(Pieces.BISHOP) | queens))
+            | (Attacks.rookAttacks(square, occupancy) & (board.getPieceBitboard(Pieces.ROOK) | queens))
+            | (Attacks.kingAttacks(square) & board.getPieceBitboard(Pieces.KING));
+    }
+
+    // pieces that are the only thing standing between square and one of the sliders in snipers
+    private long blockers(int square, long sliders) {
+        long queens = board.getPieceBitboard(Pieces.QUEEN);
+        long snipers = ((Attacks.rookAttacks(square, 0L) & (board.getPieceBitboard(Pieces.ROOK) | queens))
+            | (Attacks.bishopAttacks(square, 0L) & (board.getPieceBitboard(Pieces.BISHOP) | queens))) & sliders;
+
+        long blockers = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long between = Attacks.between(square, sniper) & occupancy;
+            if (between != 0 && (between & (between - 1)) == 0) {
+                blockers |= between;
+            }
+        }
+        return blockers;
+    }
+
+    private void generateKingMoves() {
+        long kingBit = 1L << kingSquare;
+        long targets = Attacks.kingAttacks(kingSquare) & targetMask();
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if ((attackersTo(to, occupancy ^ kingBit) & enemies) == 0) {
+                int flags = (enemies & (1L << to)) != 0 ? PackedMove.CAPTURE : PackedMove.QUIET;
+                add(PackedMove.encode(kingSquare, to, flags), isDiscoveredCheck(kingSquare, to));
+            }
+        }
+
+        if (checkers != 0 || !quiet) {
+            return;
+        }
+
+        int rank = kingSquare >> 3;
+        if (board.isKingSideCastleAvailable(us)) {
+            add(PackedMove.encode(rank * 8 + 4, rank * 8 + 6, PackedMove.KING_SIDE_CASTLE), castlingGivesCheck(rank, 7, 5, 6));
+        }
+        if (board.isQueenSideCastleAvailable(us)) {
+            add(PackedMove.encode(rank * 8 + 4, rank * 8 + 2, PackedMove.QUEEN_SIDE_CASTLE), castlingGivesCheck(rank, 0, 3, 2));
+        }
+    }
+
+    private void generatePawnMoves() {
+        int forward = us == Color.WHITE ? 8 : -8;
+        int startRank = us == Color.WHITE ? 1 : 6;
+        int lastRank = us == Color.WHITE ? 7 : 0;
+        long pawns = board.getPieceBitboard(us, Pieces.PAWN) & sources;
+
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+
+            long targets = Attacks.pawnAttacks(us, from) & enemies;
+            int push = from + forward;
+            if ((occupancy & (1L << push)) == 0) {
+                targets |= 1L << push;
+                if ((from >> 3) == startRank && (occupancy & (1L << (push + forward))) == 0) {
+                    targets |= 1L << (push + forward);
+                }
+            }
+
+            targets &= checkMask;
+            if ((pinned & (1L << from)) != 0) {
+                targets &= Attacks.line(kingSquare, from);
+            }
+
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                boolean isCapture = (enemies & (1L << to)) != 0;
+                boolean isPromotion = (to >> 3) == lastRank;
+                if (!((isCapture || isPromotion) ? noisy : quiet)) {
+                    continue;
+                }
+                if (isPromotion) {
+                    for (Pieces promotion : PROMOTIONS) {
+                        add(PackedMove.promotion(from, to, promotion, isCapture), promotionGivesCheck(from, to, promotion));
+                    }
+                } else {
+                    int flags = isCapture ? PackedMove.CAPTURE : (to - from == 2 * forward ? PackedMove.DOUBLE_PAWN_PUSH : PackedMove.QUIET);
+                    add(PackedMove.encode(from, to, flags), givesCheck(Pieces.PAWN, from, to));
+                }
+            }
+        }
+
+        if (noisy) {
+            generateEnPassant();
+        }
+    }
+
+    private void generateEnPassant() {
+        int file = board.getEnPassantFile();
+        if (file == -1) {
+            return;
+        }
+
+        int capturedSquare = (us == Color.WHITE ? 4 : 3) * 8 + file;
+        int to = capturedSquare + (us == Color.WHITE ? 8 : -8);
+        if ((board.getPieceBitboard(them, Pieces.PAWN) & (1L << capturedSquare)) == 0 || (occupancy & (1L << to)) != 0) {
+            return;
+        }
+
+        long pawns = Attacks.pawnAttacks(them, to) & board.getPieceBitboard(us, Pieces.PAWN) & sources;
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+
+            long occupancyAfter = occupancy ^ (1L << from) ^ (1L << to) ^ (1L << capturedSquare);
+            if ((attackersTo(kingSquare, occupancyAfter) & enemies & ~(1L << capturedSquare)) != 0) {
+                continue;
+            }
+
+            add(PackedMove.encode(from, to, PackedMove.EN_PASSANT), enPassantGivesCheck(from, to, occupancyAfter));
+        }
+    }
+
+    private void generatePieceMoves(Pieces piece) {
+        long pieces = board.getPieceBitboard(us, piece) & sources;
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+
+            long targets = Attacks.attacks(piece, from, occupancy) & targetMask() & checkMask;
+            if ((pinned & (1L << from)) != 0) {
+                targets &= Attacks.line(kingSquare, from);
+            }
+
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                int flags = (enemies & (1L << to)) != 0 ? PackedMove.CAPTURE : PackedMove.QUIET;
+                add(PackedMove.encode(from, to, flags), givesCheck(piece, from, to));
+            }
+        }
+    }
+
+    private boolean givesCheck(Pieces piece, int from, int to) {
+        if (enemyKingSquare == -1) {
+            return false;
+        }
+        return (checkSquares[piece.ordinal()] & (1L << to)) != 0 || isDiscoveredCheck(from, to);
+    }
+
+    private boolean isDiscoveredCheck(int from, int to) {
+        return enemyKingSquare != -1
+            && (discoverers & (1L << from)) != 0
+            && (Attacks.line(from, to) & (1L << enemyKingSquare)) == 0;
+    }
+
+    private boolean promotionGivesCheck(int from, int to, Pieces promotion) {
+        if (enemyKingSquare == -1) {
+            return false;
+        }
+        long occupancyAfter = (occupancy ^ (1L << from)) | (1L << to);
+        return (Attacks.attacks(promotion, to, occupancyAfter) & (1L << enemyKingSquare)) != 0 || isDiscoveredCheck(from, to);
+    }
+
+    private boolean castlingGivesCheck(int rank, int rookFile, int rookToFile, int kingToFile) {
+        if (enemyKingSquare == -1) {
+            return false;
+        }
+        int rookTo = rank * 8 + rookToFile;
+        long occupancyAfter = (occupancy ^ (1L << kingSquare) ^ (1L << (rank * 8 + rookFile))) | (1L << rookTo) | (1L << (rank * 8 + kingToFile));
+        return (Attacks.rookAttacks(rookTo, occupancyAfter) & (1L << enemyKingSquare)) != 0;
+    }
+
+    private boolean enPassantGivesCheck(int from, int to, long occupancyAfter) {
+        if (enemyKingSquare == -1) {
+            return false;
+        }
+        long queens = board.getPieceBitboard(us, Pieces.QUEEN);
+        return (checkSquares[Pieces.PAWN.ordinal()] & (1L << to)) != 0
+            || (Attacks.bishopAttacks(enemyKingSquare, occupancyAfter) & (board.getPieceBitboard(us, Pieces.BISHOP) | queens)) != 0
+            || (Attacks.rookAttacks(enemyKingSquare, occupancyAfter) & (board.getPieceBitboard(us, Pieces.ROOK) | queens)) != 0;
+    }
+}
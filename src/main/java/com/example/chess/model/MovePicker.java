@@ -0,0 +1,211 @@
+package com.example.chess.model;
+
+public class MovePicker {
+    /*
+     * hands out the legal moves of one search node in stages, each generated only once the one before is used up:
+     * hash move - checked for legality and returned before anything is generated
+     * good captures - captures and promotions, most valuable victim and least valuable attacker first,
+     *     one that loses material by static exchange evaluation is put aside for the end
+     * killers, countermove - quiet moves that refuted other positions, checked for legality like the hash move
+     * quiets - the remaining quiet moves by history
+     * bad captures - the captures put aside, in the order they were found
+     * in captures only mode, for quiescence, the picker stops after the good captures
+     * a cut node that fails high on the hash move never generates, one that fails high on a capture
+     * never generates quiet moves
+     */
+
+    private enum Stage {
+        HASH_MOVE, GENERATE_CAPTURES, GOOD_CAPTURES, FIRST_KILLER, SECOND_KILLER, COUNTER_MOVE,
+        GENERATE_QUIETS, QUIETS, BAD_CAPTURES, DONE
+    }
+
+    private static final int MAX_MOVES = 256;
+
+    private final Board board;
+    private final SearchHistory history;
+    private final MoveGenerator generator;
+    private final int[] moves = new int[MAX_MOVES];
+    private final int[] scores = new int[MAX_MOVES];
+
+    private Stage stage = Stage.DONE;
+    private boolean capturesOnly;
+    private Color side;
+    private int height;
+    private Pieces previousPiece;
+    private int previousTo;
+    private int hashMove;
+    private int firstKiller;
+    private int secondKiller;
+    private int counterMove;
+    private int current;
+    private int end;
+    private int badCapturesEnd;
+
+    public MovePicker(Board board, SearchHistory history) {
+        this.board = board;
+        this.history = history;
+        this.generator = new MoveGenerator(board);
+    }
+
+    // starts a node of the main search, hashMove may be PackedMove.NONE
+    // previousPiece and previousTo describe the opponent's last move, Pieces.NONE after a null move or at the root
+    public void reset(int hashMove, int height, Pieces previousPiece, int previousTo) {
+        generator.initialize();
+        this.stage = Stage.HASH_MOVE;
+        this.capturesOnly = false;
+        this.side = board.getTurn();
+        this.height = height;
+        this.previousPiece = previousPiece;
+        this.previousTo = previousTo;
+        this.hashMove = hashMove;
+        this.firstKiller = PackedMove.NONE;
+        this.secondKiller = PackedMove.NONE;
+        this.counterMove = PackedMove.NONE;
+    }
+
+    // starts a quiescence node, only captures and promotions with a static exchange of at least 0 are returned
+    public void resetCaptures() {
+        generator.initialize();
+        this.stage = Stage.GENERATE_CAPTURES;
+        this.capturesOnly = true;
+        this.side = board.getTurn();
+        this.hashMove = PackedMove.NONE;
+    }
+
+    // the next move to search, PackedMove.NONE once every move has been returned
+    public int next() {
+        while (true) {
+            switch (stage) {
+                case HASH_MOVE -> {
+                    stage = Stage.GENERATE_CAPTURES;
+                    hashMove = generator.legalMove(hashMove);
+                    if (hashMove != PackedMove.NONE) {
+                        return hashMove;
+                    }
+                }
+                case GENERATE_CAPTURES -> {
+                    end = generator.generateCaptures(moves, 0);
+                    for (int i = 0; i < end; i++) {
+                        scores[i] = captureScore(moves[i]);
+                    }
+                    current = 0;
+                    badCapturesEnd = 0;
+                    stage = Stage.GOOD_CAPTURES;
+                }
+                case GOOD_CAPTURES -> {
+                    while (current < end) {
+                        int move = pickBest(current++);
+                        if (PackedMove.sameMove(move, hashMove)) {
+                            continue;
+                        }
+                        if (board.staticExchange(move) < 0) {
+                            // current has moved past this slot already, so the put aside moves never overtake it
+                            moves[badCapturesEnd++] = move;
+                            continue;
+                        }
+                        return move;
+                    }
+                    stage = capturesOnly ? Stage.DONE : Stage.FIRST_KILLER;
+                }
+                case FIRST_KILLER -> {
+                    stage = Stage.SECOND_KILLER;
+                    firstKiller = refutation(history.killer(height, 0));
+                    if (firstKiller != PackedMove.NONE) {
+                        return firstKiller;
+                    }
+                }
+                case SECOND_KILLER -> {
+                    stage = Stage.COUNTER_MOVE;
+                    secondKiller = refutation(history.killer(height, 1));
+                    if (secondKiller != PackedMove.NONE) {
+                        return secondKiller;
+                    }
+                }
+                case COUNTER_MOVE -> {
+                    stage = Stage.GENERATE_QUIETS;
+                    if (previousPiece != Pieces.NONE) {
+                        counterMove = refutation(history.counterMove(side, previousPiece, previousTo));
+                        if (counterMove != PackedMove.NONE) {
+                            return counterMove;
+                        }
+                    }
+                }
+                case GENERATE_QUIETS -> {
+                    current = end;
+                    end = generator.generateQuiets(moves, end);
+                    for (int i = current; i < end; i++) {
+                        scores[i] = history.history(side, moves[i]);
+                    }
+                    stage = Stage.QUIETS;
+                }
+                case QUIETS -> {
+                    while (current < end) {
+                        int move = pickBest(current++);
+                        if (!isRefutation(move)) {
+                            return move;
+                        }
+                    }
+                    current = 0;
+                    stage = Stage.BAD_CAPTURES;
+                }
+                case BAD_CAPTURES -> {
+                    if (current < badCapturesEnd) {
+                        return moves[current++];
+                    }
+                    stage = Stage.DONE;
+                }
+                case DONE -> {
+                    return PackedMove.NONE;
+                }
+            }
+        }
+    }
+
+    // true while the picker hands out the captures it put aside as losing
+    public boolean isLosingCapture() {
+        return stage == Stage.BAD_CAPTURES;
+    }
+
+    private int captureScore(int move) {
+        int victim = PackedMove.isEnPassant(move) ? Pieces.PAWN.getValue()
+            : PackedMove.isCapture(move) ? board.pieceAt(PackedMove.to(move)).getValue() : 0;
+        int promotion = PackedMove.isPromotion(move) ? PackedMove.promotionPiece(move).getValue() : 0;
+        return (victim + promotion) * 8 - board.pieceAt(PackedMove.from(move)).getValue() / 8;
+    }
+
+    // a killer or countermove that is legal here, quiet and not already returned
+    private int refutation(int move) {
+        if (move == PackedMove.NONE || isRefutation(move)) {
+            return PackedMove.NONE;
+        }
+        move = generator.legalMove(move);
+        if (PackedMove.isCapture(move) || PackedMove.isPromotion(move)) {
+            return PackedMove.NONE;
+        }
+        return move;
+    }
+
+    private boolean isRefutation(int move) {
+        return PackedMove.sameMove(move, hashMove) || PackedMove.sameMove(move, firstKiller)
+            || PackedMove.sameMove(move, secondKiller) || PackedMove.sameMove(move, counterMove);
+    }
+
+    // moves the best scored move of moves[index, end) to index and returns it, ties keep generation order
+    private int pickBest(int index) {
+        int best = index;
+        for (int i = index + 1; i < end; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        if (best != index) {
+            int score = scores[best];
+            System.arraycopy(moves, index, moves, index + 1, best - index);
+            System.arraycopy(scores, index, scores, index + 1, best - index);
+            moves[index] = move;
+            scores[index] = score;
+        }
+        return move;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.chess.model;
+
+public final class PackedMove {
+    /*
+     * move - from (6 bits) | to (6 bits) << 6 | flags (4 bits) << 12, square index = rank * 8 + file
+     * flags - 0 quiet, 1 double pawn push, 2 king side castle, 3 queen side castle,
+     *         4 capture, 5 en passant, 8-11 promotion to N/B/R/Q, 12-15 capturing promotion to N/B/R/Q
+     * bit 16 is a generator annotation (move gives check), the low 16 bits identify the move
+     * 0 is never a real move since from != to
+     */
+
+    public static final int NONE = 0;
+    public static final int MOVE_MASK = 0xFFFF;
+    public static final int GIVES_CHECK = 1 << 16;
+
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PAWN_PUSH = 1;
+    public static final int KING_SIDE_CASTLE = 2;
+    public static final int QUEEN_SIDE_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMOTION = 8;
+
+    private static final Pieces[] PROMOTION_PIECES = {Pieces.KNIGHT, Pieces.BISHOP, Pieces.ROOK, Pieces.QUEEN};
+
+    private PackedMove() {
+    }
+
+    public static int encode(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    public static int promotion(int from, int to, Pieces piece, boolean isCapture) {
+        int flags = PROMOTION | (piece.ordinal() - Pieces.KNIGHT.ordinal()) | (isCapture ? CAPTURE : 0);
+        return encode(from, to, flags);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & (CAPTURE << 12)) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & (PROMOTION << 12)) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return flags(move) == EN_PASSANT;
+    }
+
+    public static boolean isCastling(int move) {
+        int flags = flags(move);
+        return flags == KING_SIDE_CASTLE || flags == QUEEN_SIDE_CASTLE;
+    }
+
+    public static boolean givesCheck(int move) {
+        return (move & GIVES_CHECK) != 0;
+    }
+
+    public static Pieces promotionPiece(int move) {
+        return isPromotion(move) ? PROMOTION_PIECES[flags(move) & 3] : Pieces.NONE;
+    }
+
+    public static boolean sameMove(int move, int other) {
+        return (move & MOVE_MASK) == (other & MOVE_MASK);
+    }
+
+    public static String toUciString(int move) {
+        String uci = Move.squareToString(from(move) >> 3, (byte) (from(move) & 7))
+            + Move.squareToString(to(move) >> 3, (byte) (to(move) & 7));
+        return isPromotion(move) ? uci + promotionPiece(move).getSymbol().toLowerCase() : uci;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.chess.model;
+
+public final class Score {
+    /*
+     * search scores are ints from the side to move's view, in the evaluation's centipawns
+     * a mate found n plies from the root scores MATE - n for the mating side and -(MATE - n)
+     * for the mated one, so shorter mates score higher
+     * everything at or beyond MATE_BOUND is a mate score, static evaluations are clamped below it
+     * the transposition table keeps mate scores relative to the stored node instead of the root
+     */
+
+    public static final int DRAW = 0;
+    public static final int MATE = 32000;
+    public static final int INFINITE = MATE + 1;
+    public static final int MAX_MATE_PLY = 256;
+    public static final int MATE_BOUND = MATE - MAX_MATE_PLY;
+
+    private Score() {
+    }
+
+    public static int matedIn(int height) {
+        return -MATE + height;
+    }
+
+    public static int mateIn(int height) {
+        return MATE - height;
+    }
+
+    public static boolean isMate(int score) {
+        return Math.abs(score) >= MATE_BOUND;
+    }
+
+    public static boolean isMate(double score) {
+        return Math.abs(score) >= MATE_BOUND;
+    }
+
+    // moves until mate as uci reports it, negative when the side to move is getting mated
+    public static int mateInMoves(int score) {
+        return score > 0 ? (MATE - score + 1) / 2 : -(MATE + score) / 2;
+    }
+
+    // static evaluations never reach the mate range
+    public static int fromEvaluation(double evaluation) {
+        return (int) Math.max(-MATE_BOUND + 1, Math.min(MATE_BOUND - 1, Math.round(evaluation)));
+    }
+
+    // bounds given as doubles, infinities included
+    public static int fromBound(double bound) {
+        return (int) Math.max(-INFINITE, Math.min(INFINITE, Math.round(bound)));
+    }
+
+    public static int toTable(int score, int height) {
+        if (score >= MATE_BOUND) return score + height;
+        if (score <= -MATE_BOUND) return score - height;
+        return score;
+    }
+
+    public static int fromTable(int score, int height) {
+        if (score >= MATE_BOUND) return score - height;
+        if (score <= -MATE_BOUND) return score + height;
+        return score;
+    }
+}
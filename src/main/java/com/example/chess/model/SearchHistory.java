@@ -0,0 +1,94 @@
+package com.example.chess.model;
+
+import java.util.Arrays;
+
+public class SearchHistory {
+    /*
+     * quiet move statistics gathered by the search to order moves, one per board so threads do not share them
+     * killers - the last two quiet moves that failed high at each height below the root, newest first
+     * history - butterfly table indexed by side, from and to square
+     *     a quiet move that fails high gets a bonus, the quiet moves tried before it the same malus,
+     *     scaled by the distance from the bound (gravity) so every value stays within +-MAX_HISTORY
+     * countermoves - the quiet move that last refuted a move, indexed by side, moved piece and target square
+     */
+
+    public static final int MAX_HISTORY = 16384;
+
+    private static final int MAX_BONUS = 1536;
+
+    private final int[][] killers;
+    private final int[] history = new int[2 * 64 * 64];
+    private final int[] counterMoves = new int[2 * 8 * 64];
+
+    public SearchHistory(int maxHeight) {
+        this.killers = new int[maxHeight][2];
+    }
+
+    // called before a new root search, old history is kept at half weight
+    public void age() {
+        for (int[] slots : killers) {
+            slots[0] = PackedMove.NONE;
+            slots[1] = PackedMove.NONE;
+        }
+        for (int i = 0; i < history.length; i++) {
+            history[i] /= 2;
+        }
+    }
+
+    public void clear() {
+        for (int[] slots : killers) {
+            slots[0] = PackedMove.NONE;
+            slots[1] = PackedMove.NONE;
+        }
+        Arrays.fill(history, 0);
+        Arrays.fill(counterMoves, PackedMove.NONE);
+    }
+
+    public int killer(int height, int slot) {
+        return killers[height][slot];
+    }
+
+    public int history(Color side, int move) {
+        return history[historyIndex(side, move)];
+    }
+
+    // previousPiece and previousTo describe the opponent's last move
+    public int counterMove(Color side, Pieces previousPiece, int previousTo) {
+        return counterMoves[counterIndex(side, previousPiece, previousTo)];
+    }
+
+    public static int bonus(int depth) {
+        return Math.min(MAX_BONUS, 16 * depth * depth);
+    }
+
+    // the quiet move that failed high at this height
+    public void addCutoff(Color side, int height, int move, Pieces previousPiece, int previousTo, int depth) {
+        move &= PackedMove.MOVE_MASK;
+        int[] slots = killers[height];
+        if (slots[0] != move) {
+            slots[1] = slots[0];
+            slots[0] = move;
+        }
+        if (previousPiece != Pieces.NONE) {
+            counterMoves[counterIndex(side, previousPiece, previousTo)] = move;
+        }
+        update(historyIndex(side, move), bonus(depth));
+    }
+
+    // a quiet move searched before the one that failed high
+    public void addFailure(Color side, int move, int depth) {
+        update(historyIndex(side, move), -bonus(depth));
+    }
+
+    private void update(int index, int bonus) {
+        history[index] += bonus - history[index] * Math.abs(bonus) / MAX_HISTORY;
+    }
+
+    private static int historyIndex(Color side, int move) {
+        return (side.ordinal() << 12) | (PackedMove.from(move) << 6) | PackedMove.to(move);
+    }
+
+    private static int counterIndex(Color side, Pieces piece, int to) {
+        return (side.ordinal() << 9) | (piece.ordinal() << 6) | to;
+    }
+}
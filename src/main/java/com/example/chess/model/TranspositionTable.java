@@ -0,0 +1,136 @@
+package com.example.chess.model;
+
+import java.util.Arrays;
+
+public class TranspositionTable {
+    /*
+     * entry - 2 longs: zobrist key ^ data, data
+     * data - move (16 bits) | generation (6 bits) | flag (2 bits) | depth (8 bits) | score (32 bits, see Score.toTable)
+     * bucket - 4 entries, 64 bytes
+     * flag is stored as TTFlag ordinal + 1 so an empty slot reads as 0
+     * slots are written without locks by every search thread, the key is stored xor-ed with the data
+     * so a slot torn by a concurrent write fails the key check and reads as a miss
+     */
+
+    public static final int NO_MOVE = PackedMove.NONE;
+
+    private static final int ENTRIES_PER_BUCKET = 4;
+    private static final int LONGS_PER_BUCKET = ENTRIES_PER_BUCKET * 2;
+    private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * Long.BYTES;
+    private static final int GENERATION_MASK = 63;
+    private static final int MAX_BUCKETS = 1 << 27;
+    private static final TTFlag[] FLAGS = TTFlag.values();
+
+    private final long[] table;
+    private final int bucketMask;
+    private int generation;
+
+    public TranspositionTable(int sizeInMb) {
+        long buckets = Math.max(1L, ((long) sizeInMb << 20) / BYTES_PER_BUCKET);
+        int bucketCount = (int) Math.min(Long.highestOneBit(buckets), MAX_BUCKETS);
+        this.table = new long[bucketCount * LONGS_PER_BUCKET];
+        this.bucketMask = bucketCount - 1;
+        this.generation = 0;
+    }
+
+    // called once per root search so entries from earlier searches become replaceable first
+    public void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        generation = 0;
+    }
+
+    // permille of the first thousand entries written in the current search, as reported by uci hashfull
+    public int hashfull() {
+        int entries = Math.min(1000, table.length / 2);
+        int used = 0;
+        for (int i = 0; i < entries * 2; i += 2) {
+            long data = table[i + 1];
+            if (data != 0 && generation(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / entries;
+    }
+
+    // returns the packed data for this key, or 0 if the position is not stored
+    public long probe(long key) {
+        int base = bucketIndex(key);
+        for (int i = base; i < base + LONGS_PER_BUCKET; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key && data != 0) {
+                if (generation(data) != generation) {
+                    data = (data & ~(((long) GENERATION_MASK) << 42)) | ((long) generation << 42);
+                    table[i] = key ^ data;
+                    table[i + 1] = data;
+                }
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    public void store(long key, int score, int depth, TTFlag flag, int move) {
+        int base = bucketIndex(key);
+        int replaceIndex = base;
+        int worstValue = Integer.MAX_VALUE;
+
+        for (int i = base; i < base + LONGS_PER_BUCKET; i += 2) {
+            long data = table[i + 1];
+            if (data == 0 || (table[i] ^ data) == key) {
+                if (move == NO_MOVE && data != 0) {
+                    move = move(data);
+                }
+                replaceIndex = i;
+                break;
+            }
+
+            // prefer replacing shallow entries and entries left over from earlier searches
+            int age = (generation - generation(data)) & GENERATION_MASK;
+            int value = depth(data) - 8 * age;
+            if (value < worstValue) {
+                worstValue = value;
+                replaceIndex = i;
+            }
+        }
+
+        long data = pack(score, depth, flag, move);
+        table[replaceIndex] = key ^ data;
+        table[replaceIndex + 1] = data;
+    }
+
+    private long pack(int score, int depth, TTFlag flag, int move) {
+        return (score & 0xFFFFFFFFL)
+            | ((long) (depth & 0xFF) << 32)
+            | ((long) (flag.ordinal() + 1) << 40)
+            | ((long) generation << 42)
+            | ((long) (move & 0xFFFF) << 48);
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) key & bucketMask) * LONGS_PER_BUCKET;
+    }
+
+    public static int score(long data) {
+        return (int) data;
+    }
+
+    public static int depth(long data) {
+        return (byte) (data >>> 32);
+    }
+
+    public static TTFlag flag(long data) {
+        return FLAGS[(int) ((data >>> 40) & 3) - 1];
+    }
+
+    private static int generation(long data) {
+        return (int) ((data >>> 42) & GENERATION_MASK);
+    }
+
+    public static int move(long data) {
+        return (int) (data >>> 48);
+    }
+}
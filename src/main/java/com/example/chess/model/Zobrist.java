@@ -0,0 +1,67 @@
+package com.example.chess.model;
+
+public final class Zobrist {
+    /*
+     * 64-bit random keys for every (color, piece, square), the side to move,
+     * each of the 16 castling-rights masks and each en passant file.
+     * Square index is rank * 8 + file (a1 = 0, h8 = 63).
+     * The seed is fixed so keys are identical across runs.
+     */
+
+    private static final long[][][] PIECE_SQUARE = new long[2][7][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long SIDE_TO_MOVE;
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int color = 0; color < 2; color++) {
+            for (int piece = 1; piece < 7; piece++) {
+                for (int square = 0; square < 64; square++) {
+                    seed = nextSeed(seed);
+                    PIECE_SQUARE[color][piece][square] = mix(seed);
+                }
+            }
+        }
+        for (int i = 0; i < 16; i++) {
+            seed = nextSeed(seed);
+            CASTLING[i] = i == 0 ? 0L : mix(seed);
+        }
+        for (int i = 0; i < 8; i++) {
+            seed = nextSeed(seed);
+            EN_PASSANT_FILE[i] = mix(seed);
+        }
+        seed = nextSeed(seed);
+        SIDE_TO_MOVE = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(Color color, Pieces piece, int square) {
+        return PIECE_SQUARE[color.ordinal()][piece.ordinal()][square];
+    }
+
+    public static long castling(int castlingRights) {
+        return CASTLING[castlingRights];
+    }
+
+    public static long enPassant(int file) {
+        return file < 0 ? 0L : EN_PASSANT_FILE[file];
+    }
+
+    public static long sideToMove() {
+        return SIDE_TO_MOVE;
+    }
+
+    // splitmix64
+    private static long nextSeed(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
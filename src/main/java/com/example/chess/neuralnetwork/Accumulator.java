@@ -0,0 +1,161 @@
+package com.example.chess.neuralnetwork;
+
+import com.example.chess.model.Board;
+
+import java.util.Arrays;
+
+public class Accumulator {
+    /*
+     * first layer pre-activations (bias + weight rows of the active inputs), one row per ply
+     * a move changes only a handful of inputs, so makeMove records them with add/remove
+     * and push writes the parent row plus those weight rows into the next slot in one pass
+     * undoMove just pops back to the parent row
+     * a quantized network gets int16 rows instead of float rows
+     */
+
+    private static final int MAX_CHANGES = 16;
+    private static final int MAX_ACTIVE_FEATURES = 64;
+
+    private final NeuralNetwork network;
+    private final int size;
+    private float[][] stack;
+    private short[][] quantizedStack;
+    private int top;
+
+    private final int[] added = new int[MAX_CHANGES];
+    private final int[] removed = new int[MAX_CHANGES];
+    private int addedCount;
+    private int removedCount;
+
+    private final int[] activeFeatures = new int[MAX_ACTIVE_FEATURES];
+    private float[] activations;
+    private float[] hidden2;
+    private short[] quantizedActivations;
+
+    public Accumulator(NeuralNetwork network, int maxPly) {
+        this.network = network;
+        this.size = network.getHiddenLayer1Size();
+        this.top = 0;
+        if(network.isQuantized()) {
+            this.quantizedStack = new short[maxPly + 1][size];
+            this.quantizedActivations = new short[size];
+        } else {
+            this.stack = new float[maxPly + 1][size];
+            this.activations = new float[size];
+            this.hidden2 = new float[network.getHiddenLayer2Size()];
+        }
+    }
+
+    public NeuralNetwork getNetwork() {
+        return network;
+    }
+
+    // recomputes the current row from the board and makes it the bottom of the stack
+    public void refresh(Board board) {
+        top = 0;
+        addedCount = 0;
+        removedCount = 0;
+
+        int count = network.getActiveFeatures(board, activeFeatures);
+        if(quantizedStack != null) {
+            short[] row = quantizedStack[0];
+            network.getFirstLayerBias(row);
+            for(int i = 0; i < count; i++) {
+                network.addInput(row, activeFeatures[i]);
+            }
+        } else {
+            float[] row = stack[0];
+            network.getFirstLayerBias(row);
+            for(int i = 0; i < count; i++) {
+                network.addInput(row, activeFeatures[i]);
+            }
+        }
+    }
+
+    public void add(int feature) {
+        added[addedCount++] = feature;
+    }
+
+    public void remove(int feature) {
+        removed[removedCount++] = feature;
+    }
+
+    // applies the recorded changes to a copy of the current row
+    public void push() {
+        if(quantizedStack != null) {
+            pushQuantized();
+        } else {
+            pushFloat();
+        }
+        addedCount = 0;
+        removedCount = 0;
+    }
+
+    private void pushFloat() {
+        if(top + 1 == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+            for(int i = top + 1; i < stack.length; i++) {
+                stack[i] = new float[size];
+            }
+        }
+
+        float[] parent = stack[top];
+        float[] child = stack[++top];
+        System.arraycopy(parent, 0, child, 0, size);
+        for(int i = 0; i < addedCount; i++) {
+            network.addInput(child, added[i]);
+        }
+        for(int i = 0; i < removedCount; i++) {
+            network.removeInput(child, removed[i]);
+        }
+    }
+
+    private void pushQuantized() {
+        if(top + 1 == quantizedStack.length) {
+            quantizedStack = Arrays.copyOf(quantizedStack, quantizedStack.length * 2);
+            for(int i = top + 1; i < quantizedStack.length; i++) {
+                quantizedStack[i] = new short[size];
+            }
+        }
+
+        short[] parent = quantizedStack[top];
+        short[] child = quantizedStack[++top];
+        System.arraycopy(parent, 0, child, 0, size);
+        for(int i = 0; i < addedCount; i++) {
+            network.addInput(child, added[i]);
+        }
+        for(int i = 0; i < removedCount; i++) {
+            network.removeInput(child, removed[i]);
+        }
+    }
+
+    // returns false when there is no parent row left, the caller then has to refresh
+    public boolean pop() {
+        if(top == 0) {
+            return false;
+        }
+        top--;
+        return true;
+    }
+
+    public float[] current() {
+        return stack[top];
+    }
+
+    public short[] currentQuantized() {
+        return quantizedStack[top];
+    }
+
+    // scratch for the later layers so leaf evaluation does not allocate
+    float[] activations() {
+        return activations;
+    }
+
+    float[] hidden2() {
+        return hidden2;
+    }
+
+    short[] quantizedActivations() {
+        return quantizedActivations;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.chess.neuralnetwork;
+
+public class EvalBatch {
+    /*
+     * first layer rows of up to capacity positions, copied out of their accumulators
+     * so the rest of the network runs as one matrix-matrix product (see NeuralNetwork.evaluateBatch)
+     * rows - count x hidden 1 size, row-major, float or int16 matching the network
+     */
+
+    private final NeuralNetwork network;
+    private final int capacity;
+    private final int size;
+    private final float[] rows;
+    private final float[] hidden2;
+    private final short[] quantizedRows;
+    private final short[] quantizedActivations;
+    private int count;
+
+    EvalBatch(NeuralNetwork network, int capacity) {
+        this.network = network;
+        this.capacity = capacity;
+        this.size = network.getHiddenLayer1Size();
+        if(network.isQuantized()) {
+            this.rows = null;
+            this.hidden2 = null;
+            this.quantizedRows = new short[capacity * size];
+            this.quantizedActivations = new short[size];
+        } else {
+            this.rows = new float[capacity * size];
+            this.hidden2 = new float[capacity * network.getHiddenLayer2Size()];
+            this.quantizedRows = null;
+            this.quantizedActivations = null;
+        }
+    }
+
+    public NeuralNetwork getNetwork() {
+        return network;
+    }
+
+    // queues the position the accumulator currently holds, returns its index in the batch
+    public int add(Accumulator accumulator) {
+        if(count == capacity) {
+            throw new IllegalStateException("Batch is full");
+        }
+        if(quantizedRows != null) {
+            System.arraycopy(accumulator.currentQuantized(), 0, quantizedRows, count * size, size);
+        } else {
+            System.arraycopy(accumulator.current(), 0, rows, count * size, size);
+        }
+        return count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    float[] rows() {
+        return rows;
+    }
+
+    float[] hidden2() {
+        return hidden2;
+    }
+
+    short[] quantizedRows() {
+        return quantizedRows;
+    }
+
+    short[] quantizedActivations() {
+        return quantizedActivations;
+    }
+}
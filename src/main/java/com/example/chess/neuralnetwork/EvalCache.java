@@ -0,0 +1,71 @@
+package com.example.chess.neuralnetwork;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+public class EvalCache {
+    /*
+     * direct-mapped cache of network scores keyed by zobrist key, one slot per key, always replaced
+     * entry - 2 longs: key ^ data, data
+     * data - valid bit (32) | score float bits (0-31)
+     * slots are written without locks, a reader recomputes key ^ data and treats a slot torn by a
+     * concurrent write as a miss, so one cache can be shared by every search thread
+     */
+
+    private static final long VALID = 1L << 32;
+    private static final int BYTES_PER_ENTRY = 2 * Long.BYTES;
+    private static final int MAX_ENTRIES = 1 << 28;
+
+    private final long[] table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public EvalCache(int sizeInMb) {
+        long entries = Math.max(1L, ((long) sizeInMb << 20) / BYTES_PER_ENTRY);
+        int entryCount = (int) Math.min(Long.highestOneBit(entries), MAX_ENTRIES);
+        this.table = new long[entryCount * 2];
+        this.mask = entryCount - 1;
+    }
+
+    // returns the packed data for this key, or 0 if the position is not cached
+    public long probe(long key) {
+        int index = ((int) key & mask) * 2;
+        long data = table[index + 1];
+        if ((data & VALID) != 0 && (table[index] ^ data) == key) {
+            hits.increment();
+            return data;
+        }
+        misses.increment();
+        return 0L;
+    }
+
+    public static double score(long data) {
+        return Float.intBitsToFloat((int) data);
+    }
+
+    public void store(long key, double score) {
+        int index = ((int) key & mask) * 2;
+        long data = VALID | (Float.floatToIntBits((float) score) & 0xFFFFFFFFL);
+        table[index] = key ^ data;
+        table[index + 1] = data;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        hits.reset();
+        misses.reset();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getSize() {
+        return table.length / 2;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.chess.neuralnetwork;
+
+/*
+ * float vector primitives used by inference
+ * the Vector API version is only loaded when jdk.incubator.vector is resolved
+ * (java --add-modules jdk.incubator.vector), otherwise the plain loops are used
+ */
+interface Kernels {
+    // dst[i] += src[srcOffset + i]
+    void add(float[] dst, float[] src, int srcOffset, int length);
+
+    // dst[i] -= src[srcOffset + i]
+    void sub(float[] dst, float[] src, int srcOffset, int length);
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    // dst[i] = max(0, src[i])
+    void relu(float[] src, float[] dst, int length);
+
+    static Kernels create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Kernels) Class.forName("com.example.chess.neuralnetwork.VectorKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall through to the scalar loops
+            }
+        }
+        return new ScalarKernels();
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.chess.neuralnetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+final class ModelFile {
+    /*
+     * binary weight file, little endian
+     * header (40 bytes) - magic "RKNN", version, type (0 float, 1 quantized), input size, hidden 1 size,
+     *                     hidden 2 size, payload length (long), CRC32 of the payload (long)
+     * float payload - input weights (feature-major), bias 1, hidden 1 weights (neuron-major), bias 2,
+     *                 hidden 2 weights, output bias, all float
+     * quantized payload - input scale (float), hidden 1 shift, hidden 2 shift (int), input weights and
+     *                     bias 1 (short), hidden 1 weights (byte), bias 2 (int), hidden 2 weights (byte), output bias (int)
+     * the file is memory-mapped and bulk-copied into the weight arrays, so processes on one host read it
+     * from the shared page cache and nothing is parsed
+     */
+
+    static final int MAGIC = 0x4E4E4B52; // "RKNN" read as a little endian int
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+
+    private static final int TYPE_FLOAT = 0;
+    private static final int TYPE_QUANTIZED = 1;
+
+    private ModelFile() {
+    }
+
+    static boolean isModelFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            return channel.read(magic, 0) == Integer.BYTES && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    static void read(Path path, NeuralNetwork network) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException(path + " is not a model file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported model file version " + version + " in " + path);
+            }
+            int type = buffer.getInt();
+            int inputSize = buffer.getInt();
+            int hidden1Size = buffer.getInt();
+            int hidden2Size = buffer.getInt();
+            long payloadLength = buffer.getLong();
+            long checksum = buffer.getLong();
+            if (inputSize != network.getInputSize() || hidden1Size != network.getHiddenLayer1Size() || hidden2Size != network.getHiddenLayer2Size()) {
+                throw new IllegalArgumentException("Model in " + path + " has layer sizes " + inputSize + "x" + hidden1Size + "x" + hidden2Size);
+            }
+            if (payloadLength != buffer.remaining()) {
+                throw new IllegalArgumentException("Truncated model file " + path);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if (crc.getValue() != checksum) {
+                throw new IllegalArgumentException("Checksum mismatch in " + path);
+            }
+
+            if (type == TYPE_FLOAT) {
+                readFloat(buffer, network, inputSize, hidden1Size, hidden2Size);
+            } else if (type == TYPE_QUANTIZED) {
+                network.quantized = readQuantized(buffer, inputSize, hidden1Size, hidden2Size);
+            } else {
+                throw new IllegalArgumentException("Unknown model type " + type + " in " + path);
+            }
+        }
+    }
+
+    private static void readFloat(ByteBuffer buffer, NeuralNetwork network, int inputSize, int hidden1Size, int hidden2Size) {
+        network.inputWeights = floats(buffer, inputSize * hidden1Size);
+        network.biasHidden1 = floats(buffer, hidden1Size);
+        network.hidden1Weights = floats(buffer, hidden2Size * hidden1Size);
+        network.biasHidden2 = floats(buffer, hidden2Size);
+        network.hidden2Weights = floats(buffer, hidden2Size);
+        network.biasOutput = buffer.getFloat();
+    }
+
+    private static QuantizedModel readQuantized(ByteBuffer buffer, int inputSize, int hidden1Size, int hidden2Size) {
+        QuantizedModel model = new QuantizedModel();
+        model.inputSize = inputSize;
+        model.hidden1Size = hidden1Size;
+        model.hidden2Size = hidden2Size;
+        model.inputScale = buffer.getFloat();
+        model.hidden1Shift = buffer.getInt();
+        model.hidden2Shift = buffer.getInt();
+        model.inputWeights = shorts(buffer, inputSize * hidden1Size);
+        model.biasHidden1 = shorts(buffer, hidden1Size);
+        model.hidden1Weights = bytes(buffer, hidden2Size * hidden1Size);
+        model.biasHidden2 = ints(buffer, hidden2Size);
+        model.hidden2Weights = bytes(buffer, hidden2Size);
+        model.biasOutput = buffer.getInt();
+        return model;
+    }
+
+    static void write(Path path, NeuralNetwork network) throws IOException {
+        int inputSize = network.getInputSize();
+        int hidden1Size = network.getHiddenLayer1Size();
+        int hidden2Size = network.getHiddenLayer2Size();
+        QuantizedModel model = network.quantized;
+
+        ByteBuffer payload;
+        if (model == null) {
+            int floats = inputSize * hidden1Size + hidden1Size + hidden2Size * hidden1Size + hidden2Size + hidden2Size + 1;
+            payload = ByteBuffer.allocate(floats * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            payload.asFloatBuffer()
+                .put(network.inputWeights)
+                .put(network.biasHidden1)
+                .put(network.hidden1Weights)
+                .put(network.biasHidden2)
+                .put(network.hidden2Weights)
+                .put(network.biasOutput);
+        } else {
+            int length = Float.BYTES + 2 * Integer.BYTES
+                + (inputSize * hidden1Size + hidden1Size) * Short.BYTES
+                + hidden2Size * hidden1Size
+                + hidden2Size * Integer.BYTES
+                + hidden2Size
+                + Integer.BYTES;
+            payload = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            payload.putFloat(model.inputScale).putInt(model.hidden1Shift).putInt(model.hidden2Shift);
+            for (short weight : model.inputWeights) {
+                payload.putShort(weight);
+            }
+            for (short bias : model.biasHidden1) {
+                payload.putShort(bias);
+            }
+            payload.put(model.hidden1Weights);
+            for (int bias : model.biasHidden2) {
+                payload.putInt(bias);
+            }
+            payload.put(model.hidden2Weights);
+            payload.putInt(model.biasOutput);
+            payload.flip();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+            .putInt(VERSION)
+            .putInt(model == null ? TYPE_FLOAT : TYPE_QUANTIZED)
+            .putInt(inputSize)
+            .putInt(hidden1Size)
+            .putInt(hidden2Size)
+            .putLong(payload.remaining())
+            .putLong(crc.getValue())
+            .flip();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (payload.hasRemaining()) {
+                channel.write(payload);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static float[] floats(ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count * Float.BYTES);
+        return values;
+    }
+
+    private static short[] shorts(ByteBuffer buffer, int count) {
+        short[] values = new short[count];
+        buffer.asShortBuffer().get(values);
+        buffer.position(buffer.position() + count * Short.BYTES);
+        return values;
+    }
+
+    private static int[] ints(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int count) {
+        byte[] values = new byte[count];
+        buffer.get(values);
+        return values;
+    }
+}
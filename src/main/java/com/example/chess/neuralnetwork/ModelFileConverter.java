@@ -0,0 +1,15 @@
+package com.example.chess.neuralnetwork;
+
+// usage: ModelFileConverter <model json> <model bin>, works for float and quantized JSON models
+public class ModelFileConverter {
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("usage: ModelFileConverter <model json> <model bin>");
+            System.exit(1);
+        }
+
+        NeuralNetwork network = new NeuralNetwork(args[0]);
+        network.save(args[1]);
+        System.out.println("Wrote " + (network.isQuantized() ? "quantized" : "float") + " model to " + args[1]);
+    }
+}
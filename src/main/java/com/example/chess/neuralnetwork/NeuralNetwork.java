@@ -1,10 +1,20 @@
 package com.example.chess.neuralnetwork;
 
+import com.example.chess.model.Board;
+import com.example.chess.model.Color;
+import com.example.chess.model.Pieces;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonParser;
 
+import com.google.gson.JsonElement;
+
 import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.Arrays;
 import java.util.HashMap;
 
@@ -12,6 +22,14 @@ public class NeuralNetwork {
     private static final int INPUT_SIZE = 8 * 8 * 12 + 1 + 4 + 8; // 768 + 1 + 4 + 8 = 781
     private static final int HIDDEN_LAYER_1_SIZE = 256; // Size of the hidden layer 1
     private static final int HIDDEN_LAYER_2_SIZE = 64; // Size of the hidden layer 2
+
+    // input layout: 12 piece planes (P N B R Q K p n b r q k, rank 8 first), side to move, castling KQkq, en passant file
+    public static final int SIDE_TO_MOVE_FEATURE = 8 * 8 * 12;
+    public static final int CASTLING_FEATURE = SIDE_TO_MOVE_FEATURE + 1;
+    public static final int EN_PASSANT_FEATURE = CASTLING_FEATURE + 4;
+
+    private static final Color[] COLORS = Color.values();
+    private static final Pieces[] PIECES = Pieces.values();
     private static final HashMap<Character, Integer> pieceTypes = new HashMap<>() {{
         put('P', 0);
         put('N', 1);
@@ -27,39 +45,299 @@ public class NeuralNetwork {
         put('k', 11);
     }};
 
-    private static double[][] WEIGHTS_INPUT_HIDDEN_1;
-    private static double[][] WEIGHTS_HIDDEN_1_HIDDEN_2;
-    private static double[][] WEIGHTS_HIDDEN_2_OUTPUT;
+    /*
+     * weights are kept as contiguous float arrays:
+     * input weights - feature-major, row f (HIDDEN_LAYER_1_SIZE floats) holds what input f adds to every
+     *                 first layer neuron, which is all the accumulator needs
+     * hidden weights - neuron-major (transposed from the file), row i holds the HIDDEN_LAYER_1_SIZE
+     *                  weights into second layer neuron i so each neuron is one dot product
+     * a quantized model file (see QuantizedModel) loads into the integer path instead,
+     * the float arrays then stay null
+     */
+    private static final Kernels KERNELS = Kernels.create();
+
+    // batch product tiling: a block of second layer neurons (16 x 256 floats) stays in cache
+    // while a block of rows is multiplied against it, batches of PARALLEL_ROWS or more are split across cores
+    private static final int ROW_BLOCK = 8;
+    private static final int NEURON_BLOCK = 16;
+    private static final int PARALLEL_ROWS = 64;
 
-    private static double[] BIAS_HIDDEN_1;
-    private static double[] BIAS_HIDDEN_2;
-    private static double[] BIAS_OUTPUT;
+    // package-private so ModelFile can fill and write them
+    float[] inputWeights;
+    float[] hidden1Weights;
+    float[] hidden2Weights;
 
+    float[] biasHidden1;
+    float[] biasHidden2;
+    float biasOutput;
+
+    QuantizedModel quantized;
+
+    // loads a binary model file (see ModelFile), the float model exported from training
+    // or a quantized model written by QuantizedModelConverter
     public NeuralNetwork(String filePath) {
         // Load weights and biases from the specified file
         loadWeightsAndBiases(filePath);
     }
 
     private void loadWeightsAndBiases(String filePath) {
+        try {
+            if (ModelFile.isModelFile(Path.of(filePath))) {
+                ModelFile.read(Path.of(filePath), this);
+                return;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+
         try (FileReader reader = new FileReader(filePath)) {
-            JsonArray jsonArray = JsonParser.parseReader(reader).getAsJsonArray();
+            JsonElement json = JsonParser.parseReader(reader);
             Gson gson = new Gson();
+            if (json.isJsonObject()) {
+                QuantizedModel model = gson.fromJson(json, QuantizedModel.class);
+                if (!QuantizedModel.FORMAT.equals(model.format)) {
+                    throw new IllegalArgumentException("Unknown model format: " + model.format);
+                }
+                this.quantized = model;
+                return;
+            }
+            JsonArray jsonArray = json.getAsJsonArray();
+
+            double[][] weightsInputHidden1 = gson.fromJson(jsonArray.get(0), double[][].class);
+            double[] biasHidden1 = gson.fromJson(jsonArray.get(1), double[].class);
+            double[][] weightsHidden1Hidden2 = gson.fromJson(jsonArray.get(2), double[][].class);
+            double[] biasHidden2 = gson.fromJson(jsonArray.get(3), double[].class);
+            double[][] weightsHidden2Output = gson.fromJson(jsonArray.get(4), double[][].class);
+            double[] biasOutput = gson.fromJson(jsonArray.get(5), double[].class);
 
-            WEIGHTS_INPUT_HIDDEN_1 = gson.fromJson(jsonArray.get(0), double[][].class);
-            BIAS_HIDDEN_1 = gson.fromJson(jsonArray.get(1), double[].class);
-            WEIGHTS_HIDDEN_1_HIDDEN_2 = gson.fromJson(jsonArray.get(2), double[][].class);
-            BIAS_HIDDEN_2 = gson.fromJson(jsonArray.get(3), double[].class);
-            WEIGHTS_HIDDEN_2_OUTPUT = gson.fromJson(jsonArray.get(4), double[][].class);
-            BIAS_OUTPUT = gson.fromJson(jsonArray.get(5), double[].class);
+            this.inputWeights = new float[INPUT_SIZE * HIDDEN_LAYER_1_SIZE];
+            for (int j = 0; j < INPUT_SIZE; j++) {
+                for (int i = 0; i < HIDDEN_LAYER_1_SIZE; i++) {
+                    inputWeights[j * HIDDEN_LAYER_1_SIZE + i] = (float) weightsInputHidden1[j][i];
+                }
+            }
+            this.hidden1Weights = new float[HIDDEN_LAYER_2_SIZE * HIDDEN_LAYER_1_SIZE];
+            for (int j = 0; j < HIDDEN_LAYER_1_SIZE; j++) {
+                for (int i = 0; i < HIDDEN_LAYER_2_SIZE; i++) {
+                    hidden1Weights[i * HIDDEN_LAYER_1_SIZE + j] = (float) weightsHidden1Hidden2[j][i];
+                }
+            }
+            this.hidden2Weights = new float[HIDDEN_LAYER_2_SIZE];
+            for (int i = 0; i < HIDDEN_LAYER_2_SIZE; i++) {
+                hidden2Weights[i] = (float) weightsHidden2Output[i][0];
+            }
+            this.biasHidden1 = toFloats(biasHidden1);
+            this.biasHidden2 = toFloats(biasHidden2);
+            this.biasOutput = (float) biasOutput[0];
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    public boolean isQuantized() {
+        return quantized != null;
+    }
+
+    // writes this model, float or quantized, as a binary model file
+    public void save(String filePath) throws IOException {
+        ModelFile.write(Path.of(filePath), this);
+    }
+
+    // writes the integer version of this float model in the format the constructor reads back
+    public void saveQuantized(String filePath) throws IOException {
+        if (isQuantized()) {
+            throw new IllegalStateException("Model is already quantized");
+        }
+        QuantizedModel model = QuantizedModel.quantize(inputWeights, biasHidden1, hidden1Weights, biasHidden2, hidden2Weights, biasOutput);
+        try (FileWriter writer = new FileWriter(filePath)) {
+            new Gson().toJson(model, writer);
+        }
+    }
+
+    private static float[] toFloats(double[] values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+        return floats;
+    }
+
     public double evaluate(String fen) {
         return predict(encodeFen(fen));
     }
 
+    // reads the inputs straight from the board, using and if needed attaching its accumulator
+    public double evaluate(Board board) {
+        return evaluate(board.getAccumulator(this));
+    }
+
+    // runs the layers after the first one on an incrementally updated first layer
+    public double evaluate(Accumulator accumulator) {
+        if (quantized != null) {
+            return quantized.predict(accumulator.currentQuantized(), accumulator.quantizedActivations());
+        }
+        return predictFromHidden1(accumulator.current(), accumulator.activations(), accumulator.hidden2());
+    }
+
+    public EvalBatch newBatch(int capacity) {
+        return new EvalBatch(this, capacity);
+    }
+
+    // scores every position in the batch, scores[i] belongs to the i-th added position
+    public void evaluateBatch(EvalBatch batch, double[] scores) {
+        int count = batch.size();
+        if (quantized != null) {
+            short[] rows = batch.quantizedRows();
+            for (int n = 0; n < count; n++) {
+                scores[n] = quantized.predict(rows, n * HIDDEN_LAYER_1_SIZE, batch.quantizedActivations());
+            }
+            return;
+        }
+
+        // Hidden Layer 1 (ReLU), in place on the copied rows
+        float[] activations = batch.rows();
+        KERNELS.relu(activations, activations, count * HIDDEN_LAYER_1_SIZE);
+
+        // Hidden Layer 2 (ReLU), one blocked matrix-matrix product over the whole batch
+        float[] hidden2 = batch.hidden2();
+        if (count >= PARALLEL_ROWS) {
+            ForkJoinPool.commonPool().invoke(new MultiplyTask(activations, hidden2, 0, count));
+        } else {
+            multiplyHidden1(activations, hidden2, 0, count);
+        }
+        KERNELS.relu(hidden2, hidden2, count * HIDDEN_LAYER_2_SIZE);
+
+        // Output Layer (Linear)
+        for (int n = 0; n < count; n++) {
+            scores[n] = biasOutput + KERNELS.dot(hidden2, n * HIDDEN_LAYER_2_SIZE, hidden2Weights, 0, HIDDEN_LAYER_2_SIZE);
+        }
+    }
+
+    // scores a set of boards in one batch, attaching accumulators where the boards have none
+    public double[] evaluateBatch(Board[] boards) {
+        EvalBatch batch = newBatch(boards.length);
+        for (Board board : boards) {
+            batch.add(board.getAccumulator(this));
+        }
+        double[] scores = new double[boards.length];
+        evaluateBatch(batch, scores);
+        return scores;
+    }
+
+    private void multiplyHidden1(float[] activations, float[] hidden2, int fromRow, int toRow) {
+        for (int rowBlock = fromRow; rowBlock < toRow; rowBlock += ROW_BLOCK) {
+            int rowEnd = Math.min(rowBlock + ROW_BLOCK, toRow);
+            for (int neuronBlock = 0; neuronBlock < HIDDEN_LAYER_2_SIZE; neuronBlock += NEURON_BLOCK) {
+                int neuronEnd = Math.min(neuronBlock + NEURON_BLOCK, HIDDEN_LAYER_2_SIZE);
+                for (int n = rowBlock; n < rowEnd; n++) {
+                    for (int i = neuronBlock; i < neuronEnd; i++) {
+                        hidden2[n * HIDDEN_LAYER_2_SIZE + i] = biasHidden2[i]
+                            + KERNELS.dot(activations, n * HIDDEN_LAYER_1_SIZE, hidden1Weights, i * HIDDEN_LAYER_1_SIZE, HIDDEN_LAYER_1_SIZE);
+                    }
+                }
+            }
+        }
+    }
+
+    private class MultiplyTask extends RecursiveAction {
+        private final float[] activations;
+        private final float[] hidden2;
+        private final int fromRow;
+        private final int toRow;
+
+        MultiplyTask(float[] activations, float[] hidden2, int fromRow, int toRow) {
+            this.activations = activations;
+            this.hidden2 = hidden2;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= PARALLEL_ROWS / 2) {
+                multiplyHidden1(activations, hidden2, fromRow, toRow);
+                return;
+            }
+            int middle = fromRow + (toRow - fromRow) / 2;
+            invokeAll(new MultiplyTask(activations, hidden2, fromRow, middle), new MultiplyTask(activations, hidden2, middle, toRow));
+        }
+    }
+
+    // writes the indices of the inputs that are 1 for this position, returns how many there are
+    public int getActiveFeatures(Board board, int[] features) {
+        int count = 0;
+        for (Color color : COLORS) {
+            boolean white = color == Color.WHITE;
+            for (int piece = Pieces.PAWN.ordinal(); piece <= Pieces.KING.ordinal(); piece++) {
+                long pieces = board.getPieceBitboard(color, PIECES[piece]);
+                while (pieces != 0) {
+                    features[count++] = pieceFeature(white, piece, Long.numberOfTrailingZeros(pieces));
+                    pieces &= pieces - 1;
+                }
+            }
+        }
+
+        if (board.getTurn() == Color.WHITE) {
+            features[count++] = SIDE_TO_MOVE_FEATURE;
+        }
+
+        int castlingRights = board.getCastlingRights();
+        for (int i = 0; i < 4; i++) {
+            if ((castlingRights & (1 << i)) != 0) {
+                features[count++] = CASTLING_FEATURE + i;
+            }
+        }
+
+        int enPassantFile = board.getEnPassantFile();
+        if (enPassantFile != -1) {
+            features[count++] = EN_PASSANT_FEATURE + enPassantFile;
+        }
+        return count;
+    }
+
+    // index of the one-hot input for a piece, square = rank * 8 + file
+    public static int pieceFeature(boolean white, int piece, int square) {
+        int plane = (white ? 0 : 6) + piece - 1;
+        return plane * 64 + (7 - (square >> 3)) * 8 + (square & 7);
+    }
+
+    int getInputSize() {
+        return INPUT_SIZE;
+    }
+
+    int getHiddenLayer1Size() {
+        return HIDDEN_LAYER_1_SIZE;
+    }
+
+    int getHiddenLayer2Size() {
+        return HIDDEN_LAYER_2_SIZE;
+    }
+
+    void getFirstLayerBias(float[] out) {
+        System.arraycopy(biasHidden1, 0, out, 0, HIDDEN_LAYER_1_SIZE);
+    }
+
+    void addInput(float[] hidden1, int feature) {
+        KERNELS.add(hidden1, inputWeights, feature * HIDDEN_LAYER_1_SIZE, HIDDEN_LAYER_1_SIZE);
+    }
+
+    void removeInput(float[] hidden1, int feature) {
+        KERNELS.sub(hidden1, inputWeights, feature * HIDDEN_LAYER_1_SIZE, HIDDEN_LAYER_1_SIZE);
+    }
+
+    void getFirstLayerBias(short[] out) {
+        quantized.getFirstLayerBias(out);
+    }
+
+    void addInput(short[] hidden1, int feature) {
+        quantized.addInput(hidden1, feature);
+    }
+
+    void removeInput(short[] hidden1, int feature) {
+        quantized.removeInput(hidden1, feature);
+    }
+
     private double[] encodeFen(String fen) {
         // 1. Piece planes: planes[piece][rank][file]
         double[][][] planes = new double[12][8][8];
@@ -119,38 +397,41 @@ public class NeuralNetwork {
         return features;
     }
 
+    // dense path used by evaluate(String), allocates its buffers since it is not used in search
     private double predict(double[] input) {
-        // Hidden Layer 1 (ReLU)
-        double[] hidden1 = new double[HIDDEN_LAYER_1_SIZE];
-        for (int i = 0; i < HIDDEN_LAYER_1_SIZE; i++) {
-            double sum = BIAS_HIDDEN_1[i];
+        if (quantized != null) {
+            short[] hidden1 = new short[HIDDEN_LAYER_1_SIZE];
+            getFirstLayerBias(hidden1);
             for (int j = 0; j < INPUT_SIZE; j++) {
-                sum += input[j] * WEIGHTS_INPUT_HIDDEN_1[j][i];
+                if (input[j] == 1.0) {
+                    addInput(hidden1, j);
+                }
             }
-            hidden1[i] = relu(sum);
+            return quantized.predict(hidden1, new short[HIDDEN_LAYER_1_SIZE]);
         }
 
-        // Hidden Layer 2 (ReLU)
-        double[] hidden2 = new double[HIDDEN_LAYER_2_SIZE];
-        for (int i = 0; i < HIDDEN_LAYER_2_SIZE; i++) {
-            double sum = BIAS_HIDDEN_2[i];
-            for (int j = 0; j < HIDDEN_LAYER_1_SIZE; j++) {
-                sum += hidden1[j] * WEIGHTS_HIDDEN_1_HIDDEN_2[j][i];
+        float[] hidden1 = new float[HIDDEN_LAYER_1_SIZE];
+        getFirstLayerBias(hidden1);
+        for (int j = 0; j < INPUT_SIZE; j++) {
+            if (input[j] == 1.0) {
+                addInput(hidden1, j);
             }
-            hidden2[i] = relu(sum);
         }
+        return predictFromHidden1(hidden1, new float[HIDDEN_LAYER_1_SIZE], new float[HIDDEN_LAYER_2_SIZE]);
+    }
 
-        // Output Layer (Linear)
-        double output = BIAS_OUTPUT[0];
+    private double predictFromHidden1(float[] hidden1, float[] activations, float[] hidden2) {
+        // Hidden Layer 1 (ReLU)
+        KERNELS.relu(hidden1, activations, HIDDEN_LAYER_1_SIZE);
+
+        // Hidden Layer 2 (ReLU)
         for (int i = 0; i < HIDDEN_LAYER_2_SIZE; i++) {
-            output += hidden2[i] * WEIGHTS_HIDDEN_2_OUTPUT[i][0];
+            hidden2[i] = biasHidden2[i] + KERNELS.dot(activations, 0, hidden1Weights, i * HIDDEN_LAYER_1_SIZE, HIDDEN_LAYER_1_SIZE);
         }
+        KERNELS.relu(hidden2, hidden2, HIDDEN_LAYER_2_SIZE);
 
-        return output;
-    }
-
-    private double relu(double x) {
-        return Math.max(0, x);
+        // Output Layer (Linear)
+        return biasOutput + KERNELS.dot(hidden2, 0, hidden2Weights, 0, HIDDEN_LAYER_2_SIZE);
     }
 
     public void printEncodedFen(String fen) {
@@ -0,0 +1,49 @@
+package com.example.chess.neuralnetwork;
+
+import com.example.chess.model.Board;
+import com.example.chess.model.Color;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// usage: QuantizationReport <float model json> <quantized model json> <file with one FEN per line>
+public class QuantizationReport {
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("usage: QuantizationReport <float model json> <quantized model json> <fen file>");
+            System.exit(1);
+        }
+
+        NeuralNetwork floatNetwork = new NeuralNetwork(args[0]);
+        NeuralNetwork quantizedNetwork = new NeuralNetwork(args[1]);
+        List<String> fens = Files.readAllLines(Path.of(args[2])).stream()
+            .map(String::trim)
+            .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+            .toList();
+
+        double totalDifference = 0.0;
+        double maxDifference = 0.0;
+        String worstFen = null;
+        for (String fen : fens) {
+            Board board = new Board(fen, Color.WHITE);
+            double floatScore = floatNetwork.evaluate(board);
+            double quantizedScore = quantizedNetwork.evaluate(board);
+            double difference = Math.abs(floatScore - quantizedScore);
+            System.out.printf("%10.2f %10.2f %8.2f  %s%n", floatScore, quantizedScore, difference, fen);
+
+            totalDifference += difference;
+            if (difference >= maxDifference) {
+                maxDifference = difference;
+                worstFen = fen;
+            }
+        }
+
+        if (fens.isEmpty()) {
+            System.out.println("No positions");
+            return;
+        }
+        System.out.printf("positions: %d, mean |diff|: %.3f cp, max |diff|: %.3f cp (%s)%n",
+            fens.size(), totalDifference / fens.size(), maxDifference, worstFen);
+    }
+}
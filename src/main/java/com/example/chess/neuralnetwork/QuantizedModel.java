@@ -0,0 +1,154 @@
+package com.example.chess.neuralnetwork;
+
+import java.util.Arrays;
+
+final class QuantizedModel {
+    /*
+     * integer version of the network, same layouts as the float arrays in NeuralNetwork:
+     * input weights and first layer bias - int16, scaled by inputScale, which is picked so the
+     *     largest first layer sum any position can produce still fits in an int16 accumulator
+     * hidden weights - int8, scaled by 2^hidden1Shift / 2^hidden2Shift so rescaling is a shift
+     * second layer bias - int32 at inputScale * 2^hidden1Shift, the sum is shifted back to inputScale
+     * output bias - int32 at inputScale * 2^hidden2Shift, the score is the output sum divided by that
+     */
+
+    static final String FORMAT = "quantized-v1";
+
+    private static final int MAX_PIECES = 32;
+    private static final int MAX_SHIFT = 14;
+
+    String format = FORMAT;
+    int inputSize;
+    int hidden1Size;
+    int hidden2Size;
+    float inputScale;
+    int hidden1Shift;
+    int hidden2Shift;
+    short[] inputWeights;
+    short[] biasHidden1;
+    byte[] hidden1Weights;
+    int[] biasHidden2;
+    byte[] hidden2Weights;
+    int biasOutput;
+
+    static QuantizedModel quantize(float[] inputWeights, float[] biasHidden1, float[] hidden1Weights,
+                                   float[] biasHidden2, float[] hidden2Weights, float biasOutput) {
+        QuantizedModel model = new QuantizedModel();
+        model.hidden1Size = biasHidden1.length;
+        model.hidden2Size = biasHidden2.length;
+        model.inputSize = inputWeights.length / model.hidden1Size;
+
+        model.inputScale = (float) (Short.MAX_VALUE / maxFirstLayerSum(inputWeights, biasHidden1, model.inputSize, model.hidden1Size));
+        model.inputWeights = toShorts(inputWeights, model.inputScale);
+        model.biasHidden1 = toShorts(biasHidden1, model.inputScale);
+
+        model.hidden1Shift = shiftFor(hidden1Weights);
+        model.hidden1Weights = toBytes(hidden1Weights, 1 << model.hidden1Shift);
+        model.biasHidden2 = new int[model.hidden2Size];
+        for (int i = 0; i < model.hidden2Size; i++) {
+            model.biasHidden2[i] = Math.round(biasHidden2[i] * model.inputScale * (1 << model.hidden1Shift));
+        }
+
+        model.hidden2Shift = shiftFor(hidden2Weights);
+        model.hidden2Weights = toBytes(hidden2Weights, 1 << model.hidden2Shift);
+        model.biasOutput = Math.round(biasOutput * model.inputScale * (1 << model.hidden2Shift));
+        return model;
+    }
+
+    // upper bound of |first layer sum| over positions: bias, the 32 largest piece inputs and every other input
+    private static double maxFirstLayerSum(float[] inputWeights, float[] bias, int inputSize, int hiddenSize) {
+        double max = 1e-9;
+        float[] column = new float[NeuralNetwork.SIDE_TO_MOVE_FEATURE];
+        for (int i = 0; i < hiddenSize; i++) {
+            for (int j = 0; j < column.length; j++) {
+                column[j] = Math.abs(inputWeights[j * hiddenSize + i]);
+            }
+            Arrays.sort(column);
+
+            double sum = Math.abs(bias[i]);
+            for (int j = 0; j < MAX_PIECES; j++) {
+                sum += column[column.length - 1 - j];
+            }
+            for (int j = NeuralNetwork.SIDE_TO_MOVE_FEATURE; j < inputSize; j++) {
+                sum += Math.abs(inputWeights[j * hiddenSize + i]);
+            }
+            max = Math.max(max, sum);
+        }
+        return max;
+    }
+
+    // largest shift that keeps every weight within int8
+    private static int shiftFor(float[] weights) {
+        float max = 0.0f;
+        for (float weight : weights) {
+            max = Math.max(max, Math.abs(weight));
+        }
+        int shift = 0;
+        while (shift < MAX_SHIFT && max * (1 << (shift + 1)) <= Byte.MAX_VALUE) {
+            shift++;
+        }
+        return shift;
+    }
+
+    private static short[] toShorts(float[] values, float scale) {
+        short[] result = new short[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(values[i] * scale)));
+        }
+        return result;
+    }
+
+    private static byte[] toBytes(float[] values, float scale) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, Math.round(values[i] * scale)));
+        }
+        return result;
+    }
+
+    void getFirstLayerBias(short[] out) {
+        System.arraycopy(biasHidden1, 0, out, 0, hidden1Size);
+    }
+
+    void addInput(short[] hidden1, int feature) {
+        int offset = feature * hidden1Size;
+        for (int i = 0; i < hidden1Size; i++) {
+            hidden1[i] += inputWeights[offset + i];
+        }
+    }
+
+    void removeInput(short[] hidden1, int feature) {
+        int offset = feature * hidden1Size;
+        for (int i = 0; i < hidden1Size; i++) {
+            hidden1[i] -= inputWeights[offset + i];
+        }
+    }
+
+    double predict(short[] hidden1, short[] activations) {
+        return predict(hidden1, 0, activations);
+    }
+
+    // same as predict for the row of hidden1 starting at offset
+    double predict(short[] hidden1, int offset, short[] activations) {
+        // Hidden Layer 1 (ReLU)
+        for (int j = 0; j < hidden1Size; j++) {
+            short value = hidden1[offset + j];
+            activations[j] = value > 0 ? value : 0;
+        }
+
+        // Hidden Layer 2 (ReLU) and Output Layer (Linear)
+        long output = biasOutput;
+        for (int i = 0; i < hidden2Size; i++) {
+            int weightOffset = i * hidden1Size;
+            int sum = biasHidden2[i];
+            for (int j = 0; j < hidden1Size; j++) {
+                sum += activations[j] * hidden1Weights[weightOffset + j];
+            }
+            if (sum > 0) {
+                output += (long) (sum >> hidden1Shift) * hidden2Weights[i];
+            }
+        }
+
+        return output / ((double) inputScale * (1 << hidden2Shift));
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.chess.neuralnetwork;
+
+// usage: QuantizedModelConverter <float model json> <quantized model json>
+public class QuantizedModelConverter {
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("usage: QuantizedModelConverter <float model json> <quantized model json>");
+            System.exit(1);
+        }
+
+        NeuralNetwork network = new NeuralNetwork(args[0]);
+        if (network.isQuantized()) {
+            System.err.println(args[0] + " is already quantized");
+            System.exit(1);
+        }
+        network.saveQuantized(args[1]);
+        System.out.println("Wrote " + args[1]);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.chess.neuralnetwork;
+
+final class ScalarKernels implements Kernels {
+    @Override
+    public void add(float[] dst, float[] src, int srcOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[i] += src[srcOffset + i];
+        }
+    }
+
+    @Override
+    public void sub(float[] dst, float[] src, int srcOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[i] -= src[srcOffset + i];
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        // four independent sums so the adds are not one long dependency chain
+        float sum0 = 0.0f, sum1 = 0.0f, sum2 = 0.0f, sum3 = 0.0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += a[aOffset + i] * b[bOffset + i];
+            sum1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            sum2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            sum3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    @Override
+    public void relu(float[] src, float[] dst, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[i] = Math.max(0.0f, src[i]);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.chess.neuralnetwork;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorKernels implements Kernels {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(float[] dst, float[] src, int srcOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, dst, i)
+                .add(FloatVector.fromArray(SPECIES, src, srcOffset + i))
+                .intoArray(dst, i);
+        }
+        for (; i < length; i++) {
+            dst[i] += src[srcOffset + i];
+        }
+    }
+
+    @Override
+    public void sub(float[] dst, float[] src, int srcOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, dst, i)
+                .sub(FloatVector.fromArray(SPECIES, src, srcOffset + i))
+                .intoArray(dst, i);
+        }
+        for (; i < length; i++) {
+            dst[i] -= src[srcOffset + i];
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            sum = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                .fma(FloatVector.fromArray(SPECIES, b, bOffset + i), sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public void relu(float[] src, float[] dst, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, src, i).max(0.0f).intoArray(dst, i);
+        }
+        for (; i < length; i++) {
+            dst[i] = Math.max(0.0f, src[i]);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.chess.search;
+
+import com.example.chess.model.Board;
+import com.example.chess.model.Color;
+import com.example.chess.model.Move;
+import com.example.chess.model.Score;
+import com.example.chess.model.TranspositionTable;
+import com.example.chess.neuralnetwork.EvalCache;
+import com.example.chess.neuralnetwork.NeuralNetwork;
+import com.example.chess.utils.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class LazySmpSearch {
+    /*
+     * lazy SMP - the main thread searches the given board, every helper searches its own Board copy
+     * of the same position with iterative deepening, odd helpers starting one ply deeper
+     * threads only talk through the shared lock-free transposition table and eval cache,
+     * helpers are stopped once the main thread is done and only the main thread's result is reported
+     */
+
+    private final NeuralNetwork neuralNetwork;
+    private TranspositionTable transpositionTable;
+    private final EvalCache evalCache;
+    private int threads = 1;
+    private ExecutorService helpers;
+    private SearchListener listener;
+
+    // state of the running time managed search, guarded by this
+    private Board activeBoard;
+    private SearchLimits activeLimits;
+    private TimeManager activeTimeManager;
+    private boolean stopConditionsArmed;
+    private volatile boolean pondering;
+    private volatile long clockStartNanos;
+
+    public LazySmpSearch(NeuralNetwork neuralNetwork) {
+        this(neuralNetwork, new TranspositionTable(Constants.DEFAULT_HASH_SIZE_MB), new EvalCache(Constants.DEFAULT_EVAL_CACHE_SIZE_MB));
+    }
+
+    public LazySmpSearch(NeuralNetwork neuralNetwork, TranspositionTable transpositionTable, EvalCache evalCache) {
+        this.neuralNetwork = neuralNetwork;
+        this.transpositionTable = transpositionTable;
+        this.evalCache = evalCache;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    // replaces the transposition table, everything stored so far is dropped
+    public void setHashSize(int sizeInMb) {
+        transpositionTable = new TranspositionTable(sizeInMb);
+    }
+
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    public EvalCache getEvalCache() {
+        return evalCache;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // total search threads including the calling one, takes effect at the next search
+    public synchronized void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1: " + threads);
+        }
+        if (threads != this.threads && helpers != null) {
+            helpers.shutdownNow();
+            helpers = null;
+        }
+        this.threads = threads;
+    }
+
+    public synchronized void shutdown() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+            helpers = null;
+        }
+    }
+
+    public SearchResult search(Board board, int depth) {
+        long startTime = System.currentTimeMillis();
+        prepare(board);
+
+        List<Board> helperBoards = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        startHelpers(board, depth + 1, helperBoards, futures);
+
+        double score = board.searchRoot(depth, neuralNetwork);
+
+        long nodes = board.getNodes() + stopHelpers(helperBoards, futures);
+        return new SearchResult(score, board.getSearchBestMove(), depth, board.getSelectiveDepth(), nodes,
+            System.currentTimeMillis() - startTime, board.getPrincipalVariation());
+    }
+
+    /*
+     * iterative deepening under the given limits, the first iteration always runs to the end
+     * so there is a move to play, later ones are aborted at the hard time budget, the node limit
+     * or Board.requestStop and the result is always the one of the last completed iteration
+     * a ponder search ignores the clock until ponderhit, which starts it from that moment
+     */
+    public SearchResult search(Board board, SearchLimits limits) {
+        long startTime = System.currentTimeMillis();
+        TimeManager timeManager = new TimeManager(limits, board.getTurn());
+        int maxDepth = limits.getDepth() > 0 ? Math.min(limits.getDepth(), Constants.MAX_SEARCH_DEPTH) : Constants.MAX_SEARCH_DEPTH;
+        prepare(board);
+        synchronized (this) {
+            activeBoard = board;
+            activeLimits = limits;
+            activeTimeManager = timeManager;
+            stopConditionsArmed = false;
+            pondering = limits.isPonder();
+            clockStartNanos = System.nanoTime();
+        }
+
+        List<Board> helperBoards = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        startHelpers(board, maxDepth + 1, helperBoards, futures);
+
+        SearchResult result = null;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            if (depth == 2) {
+                armStopConditions();
+            }
+
+            double score = board.searchRoot(depth, neuralNetwork);
+            if (board.wasAborted()) {
+                break;
+            }
+            result = new SearchResult(score, board.getSearchBestMove(), depth, board.getSelectiveDepth(),
+                board.getNodes() + countNodes(helperBoards), System.currentTimeMillis() - startTime,
+                board.getPrincipalVariation());
+            if (listener != null) {
+                listener.iterationFinished(result);
+            }
+
+            if (result.getBestMove() == null || Score.isMate(score) || board.isStopRequested()) {
+                break;
+            }
+            double sideScore = board.getTurn() == Color.WHITE ? score : -score;
+            long elapsed = (System.nanoTime() - clockStartNanos) / 1_000_000L;
+            if (timeManager.iterationFinished(elapsed, board.toPackedMove(result.getBestMove()), sideScore) && !pondering) {
+                break;
+            }
+        }
+        synchronized (this) {
+            activeBoard = null;
+            board.clearStopConditions();
+        }
+
+        long nodes = board.getNodes() + stopHelpers(helperBoards, futures);
+        long time = System.currentTimeMillis() - startTime;
+        if (result == null) {
+            // stopped inside the first iteration, fall back to whatever the table holds
+            return new SearchResult(0.0, board.getSearchBestMove(), 0, board.getSelectiveDepth(), nodes, time, new int[0]);
+        }
+        return new SearchResult(result.getScore(), result.getBestMove(), result.getDepth(), result.getSelectiveDepth(),
+            nodes, time, result.getPrincipalVariation());
+    }
+
+    // switches a running ponder search to the normal time budget, counted from now
+    public synchronized void ponderhit() {
+        if (!pondering) {
+            return;
+        }
+        clockStartNanos = System.nanoTime();
+        pondering = false;
+        if (activeBoard != null && stopConditionsArmed) {
+            stopConditionsArmed = false;
+            armStopConditions();
+        }
+    }
+
+    public boolean isPondering() {
+        return pondering;
+    }
+
+    private synchronized void armStopConditions() {
+        if (stopConditionsArmed || activeBoard == null) {
+            return;
+        }
+        stopConditionsArmed = true;
+        long deadline = Board.NO_DEADLINE;
+        if (!pondering && activeTimeManager.isTimeLimited()) {
+            deadline = clockStartNanos + activeTimeManager.getHardLimit() * 1_000_000L;
+        }
+        activeBoard.setStopConditions(activeLimits.getNodes(), deadline);
+    }
+
+    // helpers write their counters without synchronization, this is only used for reporting
+    private long countNodes(List<Board> helperBoards) {
+        long nodes = 0;
+        for (Board helperBoard : helperBoards) {
+            nodes += helperBoard.getNodes();
+        }
+        return nodes;
+    }
+
+    private void prepare(Board board) {
+        board.setTranspositionTable(transpositionTable);
+        board.setEvalCache(evalCache);
+        board.resetNodes();
+        board.getSearchHistory().age();
+        transpositionTable.newSearch();
+    }
+
+    private void startHelpers(Board board, int maxDepth, List<Board> helperBoards, List<Future<?>> futures) {
+        ExecutorService executor = getHelpers();
+        for (int i = 1; i < threads; i++) {
+            Board helperBoard = new Board(board);
+            int firstDepth = 1 + (i & 1);
+            helperBoards.add(helperBoard);
+            futures.add(executor.submit(() -> runHelper(helperBoard, firstDepth, maxDepth)));
+        }
+    }
+
+    // stops and joins the helpers, returns the nodes they searched
+    private long stopHelpers(List<Board> helperBoards, List<Future<?>> futures) {
+        for (Board helperBoard : helperBoards) {
+            helperBoard.requestStop();
+        }
+        long nodes = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+            nodes += helperBoards.get(i).getNodes();
+        }
+        return nodes;
+    }
+
+    private void runHelper(Board board, int firstDepth, int maxDepth) {
+        for (int depth = firstDepth; depth <= maxDepth && !board.isStopRequested(); depth++) {
+            board.searchRoot(depth, neuralNetwork);
+        }
+    }
+
+    private synchronized ExecutorService getHelpers() {
+        if (helpers == null && threads > 1) {
+            helpers = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "search-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return helpers;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.chess.search;
+
+import com.example.chess.model.Board;
+import com.example.chess.model.Color;
+import com.example.chess.model.PackedMove;
+import com.example.chess.neuralnetwork.NeuralNetwork;
+
+import java.io.PrintStream;
+
+// usage: SearchBenchmark <model file> <depth> [threads]
+// without threads runs the node count bench, with them searches a fixed set of positions with one thread
+// and with <threads> threads and prints the time-to-depth speedup
+public class SearchBenchmark {
+    public static final int DEFAULT_BENCH_DEPTH = 7;
+
+    private static final String[] POSITIONS = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+        "r2q1rk1/ppp2ppp/2n1bn2/2bpp3/4P3/2PP1NP1/PP1N1PBP/R1BQ1RK1 w - - 0 8",
+        "3r2k1/5ppp/8/8/8/6P1/5P1P/4R1K1 w - - 0 1",
+        "8/8/8/4k3/8/8/4P3/4K3 w - - 0 1",
+    };
+
+    public static void main(String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("usage: SearchBenchmark <model file> <depth> [threads]");
+            System.exit(1);
+        }
+        NeuralNetwork neuralNetwork = new NeuralNetwork(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        if (args.length == 2) {
+            bench(neuralNetwork, depth, System.out);
+            return;
+        }
+        int threads = Integer.parseInt(args[2]);
+
+        long singleTime = run(neuralNetwork, depth, 1);
+        long parallelTime = run(neuralNetwork, depth, threads);
+        System.out.printf("speedup with %d threads: %.2fx%n", threads, (double) singleTime / Math.max(1, parallelTime));
+    }
+
+    /*
+     * single threaded iterative deepening to a fixed depth over every position, each starting from empty tables
+     * the node total is deterministic and only changes with the search itself, so it is the number to compare
+     * before and after a search change, returns it
+     */
+    public static long bench(NeuralNetwork neuralNetwork, int depth, PrintStream out) {
+        LazySmpSearch search = new LazySmpSearch(neuralNetwork);
+        long totalTime = 0;
+        long totalNodes = 0;
+        for (String fen : POSITIONS) {
+            search.getTranspositionTable().clear();
+            search.getEvalCache().clear();
+            Board board = new Board(fen, Color.WHITE);
+            SearchResult result = search.search(board, SearchLimits.depth(depth));
+            totalTime += result.getTimeMillis();
+            totalNodes += result.getNodes();
+            out.printf("%12d nodes %8d ms  %s%n", result.getNodes(), result.getTimeMillis(), fen);
+        }
+        search.shutdown();
+        out.printf("bench depth %d: %d nodes %d nps%n", depth, totalNodes, totalNodes * 1000 / Math.max(1, totalTime));
+        return totalNodes;
+    }
+
+    // returns the total time in milliseconds
+    private static long run(NeuralNetwork neuralNetwork, int depth, int threads) {
+        LazySmpSearch search = new LazySmpSearch(neuralNetwork);
+        search.setThreads(threads);
+        long totalTime = 0;
+        long totalNodes = 0;
+        for (String fen : POSITIONS) {
+            search.getTranspositionTable().clear();
+            search.getEvalCache().clear();
+            Board board = new Board(fen, Color.WHITE);
+            SearchResult result = search.search(board, depth);
+            totalTime += result.getTimeMillis();
+            totalNodes += result.getNodes();
+            System.out.printf("threads %2d  %8d ms  %12d nodes  %-6s %10.2f  %s%n", threads, result.getTimeMillis(), result.getNodes(),
+                result.getBestMove() == null ? "-" : PackedMove.toUciString(board.toPackedMove(result.getBestMove())), result.getScore(), fen);
+        }
+        search.shutdown();
+        System.out.printf("threads %2d  %8d ms  %12d nodes  %d nps%n", threads, totalTime, totalNodes, totalNodes * 1000 / Math.max(1, totalTime));
+        return totalTime;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.chess.search;
+
+import com.example.chess.model.Color;
+
+public class SearchLimits {
+    /*
+     * the limits of the uci go command, times in milliseconds, 0 means not given
+     * with none of them set the search runs until it is stopped or reaches the maximum depth
+     */
+
+    private long whiteTime;
+    private long blackTime;
+    private long whiteIncrement;
+    private long blackIncrement;
+    private int movesToGo;
+    private long moveTime;
+    private long nodes;
+    private int depth;
+    private boolean infinite;
+    private boolean ponder;
+
+    public static SearchLimits depth(int depth) {
+        SearchLimits limits = new SearchLimits();
+        limits.setDepth(depth);
+        return limits;
+    }
+
+    public static SearchLimits moveTime(long moveTime) {
+        SearchLimits limits = new SearchLimits();
+        limits.setMoveTime(moveTime);
+        return limits;
+    }
+
+    public long getTime(Color color) {
+        return color == Color.WHITE ? whiteTime : blackTime;
+    }
+
+    public long getIncrement(Color color) {
+        return color == Color.WHITE ? whiteIncrement : blackIncrement;
+    }
+
+    public boolean hasClock(Color color) {
+        return getTime(color) > 0;
+    }
+
+    public long getWhiteTime() {
+        return whiteTime;
+    }
+
+    public void setWhiteTime(long whiteTime) {
+        this.whiteTime = whiteTime;
+    }
+
+    public long getBlackTime() {
+        return blackTime;
+    }
+
+    public void setBlackTime(long blackTime) {
+        this.blackTime = blackTime;
+    }
+
+    public long getWhiteIncrement() {
+        return whiteIncrement;
+    }
+
+    public void setWhiteIncrement(long whiteIncrement) {
+        this.whiteIncrement = whiteIncrement;
+    }
+
+    public long getBlackIncrement() {
+        return blackIncrement;
+    }
+
+    public void setBlackIncrement(long blackIncrement) {
+        this.blackIncrement = blackIncrement;
+    }
+
+    public int getMovesToGo() {
+        return movesToGo;
+    }
+
+    public void setMovesToGo(int movesToGo) {
+        this.movesToGo = movesToGo;
+    }
+
+    public long getMoveTime() {
+        return moveTime;
+    }
+
+    public void setMoveTime(long moveTime) {
+        this.moveTime = moveTime;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(long nodes) {
+        this.nodes = nodes;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public boolean isInfinite() {
+        return infinite;
+    }
+
+    public void setInfinite(boolean infinite) {
+        this.infinite = infinite;
+    }
+
+    public boolean isPonder() {
+        return ponder;
+    }
+
+    public void setPonder(boolean ponder) {
+        this.ponder = ponder;
+    }
+}
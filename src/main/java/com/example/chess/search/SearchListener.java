@@ -0,0 +1,6 @@
+package com.example.chess.search;
+
+public interface SearchListener {
+    // called on the searching thread after every completed iteration
+    void iterationFinished(SearchResult result);
+}
@@ -0,0 +1,52 @@
+package com.example.chess.search;
+
+import com.example.chess.model.Move;
+
+public class SearchResult {
+    private final double score;
+    private final Move bestMove;
+    private final int depth;
+    private final int selectiveDepth;
+    private final long nodes;
+    private final long timeMillis;
+    private final int[] principalVariation;
+
+    public SearchResult(double score, Move bestMove, int depth, int selectiveDepth, long nodes, long timeMillis, int[] principalVariation) {
+        this.score = score;
+        this.bestMove = bestMove;
+        this.depth = depth;
+        this.selectiveDepth = selectiveDepth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+        this.principalVariation = principalVariation;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public Move getBestMove() {
+        return bestMove;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getSelectiveDepth() {
+        return selectiveDepth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    // packed moves starting with the best move, may be empty
+    public int[] getPrincipalVariation() {
+        return principalVariation;
+    }
+}
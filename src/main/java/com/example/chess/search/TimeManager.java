@@ -0,0 +1,109 @@
+package com.example.chess.search;
+
+import com.example.chess.model.Color;
+
+public class TimeManager {
+    /*
+     * two budgets per move:
+     * soft - checked between iterations, no new iteration is started once it is used up
+     * hard - the deadline the running iteration is aborted at, its partial result is thrown away
+     * the soft budget shrinks while the best move stays the same over several iterations
+     * and grows when the score drops against the previous iteration, never beyond the hard one
+     */
+
+    // time kept back for the gui and the process to send the move
+    private static final long MOVE_OVERHEAD = 30;
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    private static final int MAX_MOVES_TO_GO = 50;
+    // the hard budget may use this many soft budgets, but never more than 1 / HARD_FRACTION of the clock
+    private static final int HARD_FACTOR = 4;
+    private static final int HARD_FRACTION = 4;
+    private static final double SCORE_DROP = 30.0;
+
+    private final long softLimit;
+    private final long hardLimit;
+    private final boolean timeLimited;
+    private final boolean fixedTime;
+
+    private int stableIterations;
+    private int lastBestMove;
+    private double lastScore;
+    private boolean hasLastIteration;
+
+    public TimeManager(SearchLimits limits, Color sideToMove) {
+        if (limits.isInfinite()) {
+            softLimit = Long.MAX_VALUE;
+            hardLimit = Long.MAX_VALUE;
+            timeLimited = false;
+            fixedTime = false;
+        } else if (limits.getMoveTime() > 0) {
+            softLimit = Math.max(1, limits.getMoveTime() - MOVE_OVERHEAD);
+            hardLimit = softLimit;
+            timeLimited = true;
+            fixedTime = true;
+        } else if (limits.hasClock(sideToMove)) {
+            long time = limits.getTime(sideToMove);
+            long increment = limits.getIncrement(sideToMove);
+            int movesToGo = limits.getMovesToGo() > 0 ? Math.min(limits.getMovesToGo(), MAX_MOVES_TO_GO) : DEFAULT_MOVES_TO_GO;
+            long available = Math.max(1, time - MOVE_OVERHEAD);
+
+            long soft = available / movesToGo + increment * 3 / 4;
+            long hard = Math.min(soft * HARD_FACTOR, available / HARD_FRACTION + increment);
+            if (movesToGo == 1) {
+                hard = available;
+            }
+            softLimit = Math.max(1, Math.min(soft, available));
+            hardLimit = Math.max(softLimit, Math.min(hard, available));
+            timeLimited = true;
+            fixedTime = false;
+        } else {
+            softLimit = Long.MAX_VALUE;
+            hardLimit = Long.MAX_VALUE;
+            timeLimited = false;
+            fixedTime = false;
+        }
+    }
+
+    public boolean isTimeLimited() {
+        return timeLimited;
+    }
+
+    public long getSoftLimit() {
+        return softLimit;
+    }
+
+    public long getHardLimit() {
+        return hardLimit;
+    }
+
+    // called after every completed iteration with the score from the side to move's view,
+    // returns true when the next iteration should not be started
+    public boolean iterationFinished(long elapsed, int bestMove, double score) {
+        double scale = 1.0;
+        if (hasLastIteration) {
+            stableIterations = bestMove == lastBestMove ? stableIterations + 1 : 0;
+            if (lastScore - score > SCORE_DROP) {
+                scale = lastScore - score > 2 * SCORE_DROP ? 2.0 : 1.5;
+            }
+        }
+        lastBestMove = bestMove;
+        lastScore = score;
+        hasLastIteration = true;
+
+        if (!timeLimited) {
+            return false;
+        }
+        if (fixedTime) {
+            return elapsed >= softLimit;
+        }
+
+        if (stableIterations >= 4) {
+            scale *= 0.5;
+        } else if (stableIterations >= 2) {
+            scale *= 0.75;
+        }
+        long budget = (long) Math.min(hardLimit, softLimit * scale);
+        // the next iteration takes a few times longer than this one, do not start what cannot finish
+        return elapsed >= budget || elapsed * 2 >= hardLimit;
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.chess.uci;
+
+import com.example.chess.model.Board;
+import com.example.chess.model.Color;
+import com.example.chess.model.Move;
+import com.example.chess.model.PackedMove;
+import com.example.chess.model.Score;
+import com.example.chess.neuralnetwork.NeuralNetwork;
+import com.example.chess.search.LazySmpSearch;
+import com.example.chess.search.SearchBenchmark;
+import com.example.chess.search.SearchLimits;
+import com.example.chess.search.SearchResult;
+import com.example.chess.utils.Constants;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.List;
+
+public class UciEngine {
+    /*
+     * uci front end: commands are read on the calling thread, go starts the search on its own thread
+     * so stop, ponderhit and isready are answered while it runs
+     * the search works on a copy of the position, bestmove is printed by the search thread when it ends,
+     * after go infinite and go ponder only once the gui has sent stop or ponderhit
+     */
+
+    private static final String NAME = "Rook-ie";
+    private static final String AUTHOR = "Vansh Sukhija";
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final int MAX_HASH_SIZE_MB = 1024;
+    private static final int MAX_THREADS = 64;
+
+    private final NeuralNetwork neuralNetwork;
+    private final LazySmpSearch search;
+    private final PrintStream out;
+    private Board board;
+
+    // guarded by this
+    private Thread searchThread;
+    private Board searchBoard;
+    private boolean holdBestMove;
+
+    public UciEngine(NeuralNetwork neuralNetwork, PrintStream out) {
+        this.neuralNetwork = neuralNetwork;
+        this.search = new LazySmpSearch(neuralNetwork);
+        this.search.setListener(this::sendInfo);
+        this.out = out;
+        this.board = new Board(START_FEN, Color.WHITE);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String modelFile = new File("chess_nn_model.bin").exists() ? "chess_nn_model.bin" : "chess_nn_model.json";
+        UciEngine engine = new UciEngine(new NeuralNetwork(modelFile), System.out);
+        engine.run(new BufferedReader(new InputStreamReader(System.in)));
+    }
+
+    // reads commands until quit or the end of the input
+    public void run(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!handle(line.trim())) {
+                break;
+            }
+        }
+        stopSearch();
+        search.shutdown();
+    }
+
+    // returns false on quit
+    private boolean handle(String line) {
+        String[] tokens = line.split("\\s+");
+        switch (tokens[0]) {
+            case "uci" -> {
+                send("id name " + NAME);
+                send("id author " + AUTHOR);
+                send("option name Hash type spin default " + Constants.DEFAULT_HASH_SIZE_MB + " min 1 max " + MAX_HASH_SIZE_MB);
+                send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                send("option name Ponder type check default false");
+                send("uciok");
+            }
+            case "isready" -> send("readyok");
+            case "ucinewgame" -> {
+                stopSearch();
+                search.getTranspositionTable().clear();
+                search.getEvalCache().clear();
+                board = new Board(START_FEN, Color.WHITE);
+            }
+            case "position" -> {
+                stopSearch();
+                position(tokens);
+            }
+            case "go" -> {
+                stopSearch();
+                go(tokens);
+            }
+            case "stop" -> requestStop();
+            case "ponderhit" -> ponderhit();
+            case "setoption" -> {
+                stopSearch();
+                setOption(tokens);
+            }
+            case "bench" -> {
+                stopSearch();
+                int depth = tokens.length > 1 ? Integer.parseInt(tokens[1]) : SearchBenchmark.DEFAULT_BENCH_DEPTH;
+                SearchBenchmark.bench(neuralNetwork, depth, out);
+            }
+            case "quit" -> {
+                return false;
+            }
+            default -> {
+                // debug, register and unknown commands are ignored as the protocol asks
+            }
+        }
+        return true;
+    }
+
+    private void position(String[] tokens) {
+        int index = 1;
+        String fen;
+        if (tokens.length > 1 && tokens[1].equals("fen")) {
+            StringBuilder builder = new StringBuilder();
+            index = 2;
+            while (index < tokens.length && !tokens[index].equals("moves")) {
+                builder.append(index > 2 ? " " : "").append(tokens[index++]);
+            }
+            fen = builder.toString();
+        } else {
+            fen = START_FEN;
+            index = 2;
+        }
+
+        Board position = new Board(fen, Color.WHITE);
+        if (index < tokens.length && tokens[index].equals("moves")) {
+            for (int i = index + 1; i < tokens.length; i++) {
+                Move move = Move.uciStringToMove(tokens[i], position);
+                if (move == null) {
+                    send("info string illegal move " + tokens[i]);
+                    break;
+                }
+                position.makeMove(move);
+            }
+        }
+        board = position;
+    }
+
+    private void go(String[] tokens) {
+        SearchLimits limits = new SearchLimits();
+        for (int i = 1; i < tokens.length; i++) {
+            switch (tokens[i]) {
+                case "wtime" -> limits.setWhiteTime(Long.parseLong(tokens[++i]));
+                case "btime" -> limits.setBlackTime(Long.parseLong(tokens[++i]));
+                case "winc" -> limits.setWhiteIncrement(Long.parseLong(tokens[++i]));
+                case "binc" -> limits.setBlackIncrement(Long.parseLong(tokens[++i]));
+                case "movestogo" -> limits.setMovesToGo(Integer.parseInt(tokens[++i]));
+                case "movetime" -> limits.setMoveTime(Long.parseLong(tokens[++i]));
+                case "nodes" -> limits.setNodes(Long.parseLong(tokens[++i]));
+                case "depth" -> limits.setDepth(Integer.parseInt(tokens[++i]));
+                case "infinite" -> limits.setInfinite(true);
+                case "ponder" -> limits.setPonder(true);
+                default -> {
+                    // searchmoves and mate are not supported
+                }
+            }
+        }
+
+        Board position = new Board(board);
+        synchronized (this) {
+            searchBoard = position;
+            holdBestMove = limits.isInfinite() || limits.isPonder();
+            searchThread = new Thread(() -> runSearch(position, limits), "search");
+            searchThread.start();
+        }
+    }
+
+    private void runSearch(Board position, SearchLimits limits) {
+        SearchResult result = search.search(position, limits);
+
+        synchronized (this) {
+            while (holdBestMove) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        Move bestMove = result.getBestMove();
+        if (bestMove == null) {
+            List<Move> moves = position.getAllLegalMoves();
+            bestMove = moves.isEmpty() ? null : moves.get(0);
+        }
+        if (bestMove == null) {
+            send("bestmove 0000");
+            return;
+        }
+
+        int packed = position.toPackedMove(bestMove);
+        int[] pv = result.getPrincipalVariation();
+        if (pv.length > 1 && PackedMove.sameMove(pv[0], packed)) {
+            send("bestmove " + PackedMove.toUciString(packed) + " ponder " + PackedMove.toUciString(pv[1]));
+        } else {
+            send("bestmove " + PackedMove.toUciString(packed));
+        }
+    }
+
+    private void sendInfo(SearchResult result) {
+        Board position;
+        synchronized (this) {
+            position = searchBoard;
+        }
+        long time = Math.max(1, result.getTimeMillis());
+        int[] pv = result.getPrincipalVariation();
+
+        StringBuilder line = new StringBuilder("info depth ").append(result.getDepth())
+            .append(" seldepth ").append(Math.max(result.getDepth(), result.getSelectiveDepth()))
+            .append(" score ").append(formatScore(result.getScore(), position.getTurn()))
+            .append(" nodes ").append(result.getNodes())
+            .append(" nps ").append(result.getNodes() * 1000 / time)
+            .append(" hashfull ").append(search.getTranspositionTable().hashfull())
+            .append(" time ").append(result.getTimeMillis());
+        if (pv.length > 0) {
+            line.append(" pv");
+            for (int move : pv) {
+                line.append(' ').append(PackedMove.toUciString(move));
+            }
+        }
+        send(line.toString());
+    }
+
+    // scores are from white's view, uci wants the side to move's
+    private static String formatScore(double score, Color turn) {
+        int sideScore = (int) Math.round(turn == Color.WHITE ? score : -score);
+        if (Score.isMate(sideScore)) {
+            return "mate " + Score.mateInMoves(sideScore);
+        }
+        return "cp " + sideScore;
+    }
+
+    private void setOption(String[] tokens) {
+        StringBuilder name = new StringBuilder();
+        String value = null;
+        for (int i = 1; i < tokens.length; i++) {
+            if (tokens[i].equals("name")) {
+                continue;
+            }
+            if (tokens[i].equals("value")) {
+                value = i + 1 < tokens.length ? tokens[i + 1] : null;
+                break;
+            }
+            name.append(name.length() > 0 ? " " : "").append(tokens[i]);
+        }
+
+        try {
+            switch (name.toString().toLowerCase()) {
+                case "hash" -> search.setHashSize(Math.max(1, Math.min(MAX_HASH_SIZE_MB, Integer.parseInt(value))));
+                case "threads" -> search.setThreads(Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(value))));
+                case "ponder" -> {
+                    // pondering is driven by go ponder, nothing to set up
+                }
+                default -> send("info string unknown option " + name);
+            }
+        } catch (NumberFormatException e) {
+            send("info string invalid value for " + name + ": " + value);
+        }
+    }
+
+    private synchronized void requestStop() {
+        holdBestMove = false;
+        if (searchBoard != null) {
+            searchBoard.requestStop();
+        }
+        notifyAll();
+    }
+
+    private synchronized void ponderhit() {
+        search.ponderhit();
+        holdBestMove = false;
+        notifyAll();
+    }
+
+    // stops the running search and waits until its bestmove is out
+    private void stopSearch() {
+        Thread thread;
+        synchronized (this) {
+            thread = searchThread;
+            searchThread = null;
+        }
+        if (thread == null) {
+            return;
+        }
+
+        requestStop();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void send(String line) {
+        out.println(line);
+        out.flush();
+    }
+}
@@ -1,5 +1,10 @@
 package com.example.chess.utils;
 
 public class Constants {
-    public static final int MAX_DEPTH_TO_SEARCH = 6;
+    public static final int MAX_DEPTH_TO_SEARCH = 4;
+    public static final int MAX_SEARCH_DEPTH = 64;
+    public static final long GAME_TIME_MILLIS = 5 * 60 * 1000;
+    public static final long GAME_INCREMENT_MILLIS = 2000;
+    public static final int DEFAULT_HASH_SIZE_MB = 16;
+    public static final int DEFAULT_EVAL_CACHE_SIZE_MB = 8;
 }
@@ -1,12 +1,25 @@
 package com.example.chess;
 
 import com.example.chess.model.*;
+import com.example.chess.neuralnetwork.EvalCache;
 import com.example.chess.neuralnetwork.NeuralNetwork;
+import com.example.chess.search.LazySmpSearch;
+import com.example.chess.search.SearchLimits;
+import com.example.chess.search.SearchResult;
+import com.example.chess.search.TimeManager;
+import com.example.chess.uci.UciEngine;
 import com.example.chess.utils.Constants;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Path;
 import java.util.List;
 
 public class ChessGameTest {
@@ -37,9 +50,106 @@ public class ChessGameTest {
         return count;
     }
 
+    private void assertZobristKeys(Board board, int depth) {
+        assertEquals(setUp(board.getFEN(), Color.WHITE).getZobristKey(), board.getZobristKey());
+        if(depth == 0) {
+            return;
+        }
+
+        for(Move move : board.getAllLegalMoves()) {
+            long keyBefore = board.getZobristKey();
+            byte capturedPiece = board.makeMove(move);
+            assertZobristKeys(board, depth - 1);
+            board.undoMove(move, capturedPiece);
+            assertEquals(keyBefore, board.getZobristKey());
+        }
+    }
+
+    @Test
+    public void testZobristKeyIsUpdatedIncrementally() {
+        Board board = setUp("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -", Color.WHITE);
+        assertZobristKeys(board, 3);
+    }
+
+    private void assertBitboardsMatchBoardRows(Board board, int depth) {
+        int[] material = new int[2];
+        for(int rank = 0; rank < 8; rank++) {
+            for(byte file = 0; file < 8; file++) {
+                long bit = 1L << (rank * 8 + file);
+                Pieces piece = board.getBoardRow(rank).getPiece(file);
+                if(piece == Pieces.NONE) {
+                    assertEquals(0L, board.getOccupancy() & bit);
+                } else {
+                    Color color = board.getBoardRow(rank).getColor(file);
+                    assertNotEquals(0L, board.getPieceBitboard(color, piece) & bit);
+                    material[color.ordinal()] += piece.getValue();
+                    if(piece == Pieces.KING) {
+                        assertEquals(rank * 8 + file, board.getKingSquare(color));
+                    }
+                }
+            }
+        }
+        for(Color color : Color.values()) {
+            assertEquals(material[color.ordinal()], board.getMaterial(color));
+            assertEquals(Long.bitCount(board.getPieceBitboard(color, Pieces.QUEEN)), board.getPieceCount(color, Pieces.QUEEN));
+        }
+        assertEquals(setUp(board.getFEN(), Color.WHITE).getPhase(), board.getPhase());
+        if(depth == 0) {
+            return;
+        }
+
+        for(Move move : board.getAllLegalMoves()) {
+            byte capturedPiece = board.makeMove(move);
+            assertBitboardsMatchBoardRows(board, depth - 1);
+            board.undoMove(move, capturedPiece);
+        }
+    }
+
+    @Test
+    public void testBitboardsMatchBoardRows() {
+        Board board = setUp("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -", Color.WHITE);
+        assertBitboardsMatchBoardRows(board, 3);
+    }
+
+    @Test
+    public void testPackedMovesRoundTrip() {
+        Board board = setUp("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 b kq - 0 1", Color.BLACK);
+        for(Move move : board.getAllLegalMoves()) {
+            int packed = board.toPackedMove(move);
+            assertEquals(packed, board.toPackedMove(board.toMove(packed)));
+            assertEquals(move.getFromRank() * 8 + move.getFromFile(), PackedMove.from(packed));
+            assertEquals(move.getToRank() * 8 + move.getToFile(), PackedMove.to(packed));
+
+            String fen = board.getFEN();
+            long key = board.getZobristKey();
+            board.makeMove(packed);
+            board.undoMove(packed);
+            assertEquals(fen, board.getFEN());
+            assertEquals(key, board.getZobristKey());
+        }
+    }
+
+    @Test
+    public void testTranspositionTableStoresPackedEntries() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = setUp(Color.WHITE).getZobristKey();
+        assertEquals(0L, table.probe(key));
+
+        table.store(key, -37, 7, TTFlag.LOWERBOUND, 1234);
+        long entry = table.probe(key);
+        assertEquals(-37, TranspositionTable.score(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TTFlag.LOWERBOUND, TranspositionTable.flag(entry));
+        assertEquals(1234, TranspositionTable.move(entry));
+
+        // a store without a move keeps the move already known for the position
+        table.store(key, 12, 8, TTFlag.EXACT, TranspositionTable.NO_MOVE);
+        assertEquals(1234, TranspositionTable.move(table.probe(key)));
+    }
+
     @Test
     public void testBoardFen() {
-        String fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -";
+        String fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
         Board boardFromFen = setUp(fen, Color.WHITE);
         Board board = setUp(Color.WHITE);
 
@@ -86,6 +196,476 @@ public class ChessGameTest {
         assertEquals(119060324, countLegalMoves(board, 6, 0));
     }
 
+    @Test
+    public void countKiwipeteMovesAtDepth3() {
+        Board board = setUp("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -", Color.WHITE);
+        assertEquals(97862, countLegalMoves(board, 3, 0));
+    }
+
+    @Test
+    public void countPinnedEnPassantMovesAtDepth4() {
+        Board board = setUp("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - -", Color.WHITE);
+        assertEquals(43238, countLegalMoves(board, 4, 0));
+    }
+
+    @Test
+    public void countPromotionMovesAtDepth3() {
+        Board board = setUp("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq -", Color.WHITE);
+        assertEquals(9467, countLegalMoves(board, 3, 0));
+    }
+
+    private void assertAccumulatorMatchesFen(Board board, NeuralNetwork nn, int depth) {
+        assertEquals(nn.evaluate(board.getFEN()), nn.evaluate(board), 1e-3);
+        assertEquals(nn.evaluate(board.getFEN()), nn.evaluate(setUp(board.getFEN(), board.getTurn())), 1e-3);
+        if(depth == 0) {
+            return;
+        }
+
+        for(Move move : board.getAllLegalMoves()) {
+            byte capturedPiece = board.makeMove(move);
+            assertAccumulatorMatchesFen(board, nn, depth - 1);
+            board.undoMove(move, capturedPiece);
+        }
+    }
+
+    @Test
+    public void testAccumulatorMatchesFullEvaluation() {
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+        Board board = setUp("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -", Color.WHITE);
+        board.setNeuralNetwork(nn);
+        assertAccumulatorMatchesFen(board, nn, 2);
+
+        board = setUp("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq -", Color.WHITE);
+        board.setNeuralNetwork(nn);
+        assertAccumulatorMatchesFen(board, nn, 2);
+    }
+
+    @Test
+    public void testQuantizedModelTracksFloatModel(@TempDir Path directory) throws Exception {
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+        String quantizedPath = directory.resolve("quantized.json").toString();
+        nn.saveQuantized(quantizedPath);
+        NeuralNetwork quantized = new NeuralNetwork(quantizedPath);
+        assertTrue(quantized.isQuantized());
+
+        Board board = setUp("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -", Color.WHITE);
+        assertEquals(nn.evaluate(board.getFEN()), quantized.evaluate(board.getFEN()), 10.0);
+        board.setNeuralNetwork(quantized);
+        assertAccumulatorMatchesFen(board, quantized, 2);
+    }
+
+    @Test
+    public void testBinaryModelFileRoundTrip(@TempDir Path directory) throws Exception {
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+        String binaryPath = directory.resolve("model.bin").toString();
+        nn.save(binaryPath);
+        NeuralNetwork loaded = new NeuralNetwork(binaryPath);
+
+        String quantizedPath = directory.resolve("quantized.json").toString();
+        String quantizedBinaryPath = directory.resolve("quantized.bin").toString();
+        nn.saveQuantized(quantizedPath);
+        NeuralNetwork quantized = new NeuralNetwork(quantizedPath);
+        quantized.save(quantizedBinaryPath);
+        NeuralNetwork loadedQuantized = new NeuralNetwork(quantizedBinaryPath);
+        assertTrue(loadedQuantized.isQuantized());
+
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -";
+        assertEquals(nn.evaluate(fen), loaded.evaluate(fen));
+        assertEquals(quantized.evaluate(fen), loadedQuantized.evaluate(fen));
+    }
+
+    @Test
+    public void testEvalCacheCountsHitsAndMisses() {
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+        EvalCache cache = new EvalCache(1);
+        Board board = setUp(Color.WHITE);
+        board.setEvalCache(cache);
+
+        double score = board.evaluate(nn);
+        assertEquals(score, board.evaluate(nn));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // a second board sharing the cache finds the position too
+        Board other = setUp(Color.WHITE);
+        other.setEvalCache(cache);
+        assertEquals(score, other.evaluate(nn));
+        assertEquals(2, cache.getHits());
+        assertEquals(0L, cache.probe(board.getZobristKey() ^ 1L));
+    }
+
+    @Test
+    public void testBatchedLeavesMatchSingleEvaluation() {
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -";
+        Board board = setUp(fen, Color.WHITE);
+
+        List<Move> moves = board.getAllLegalMoves();
+        Board[] children = new Board[moves.size()];
+        for(int i = 0; i < children.length; i++) {
+            board.makeMove(moves.get(i));
+            children[i] = setUp(board.getFEN(), board.getTurn());
+            board.undoMove(moves.get(i), (byte) 0);
+        }
+        double[] scores = nn.evaluateBatch(children);
+        for(int i = 0; i < children.length; i++) {
+            assertEquals(nn.evaluate(children[i].getFEN()), scores[i], 1e-3);
+        }
+
+        Board batched = setUp(fen, Color.WHITE);
+        batched.setBatchedLeaves(true);
+        assertEquals(board.search(3, nn), batched.search(3, nn), 1.0);
+    }
+
+    @Test
+    public void testLazySmpSearchFindsLegalMove() {
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -";
+        Board board = setUp(fen, Color.WHITE);
+
+        String before = board.getFEN();
+        Board copy = new Board(board);
+        assertEquals(before, copy.getFEN());
+        assertEquals(board.getZobristKey(), copy.getZobristKey());
+
+        LazySmpSearch search = new LazySmpSearch(nn);
+        search.setThreads(3);
+        SearchResult result = search.search(board, 3);
+        search.shutdown();
+
+        assertNotNull(result.getBestMove());
+        int bestMove = board.toPackedMove(result.getBestMove());
+        assertTrue(board.getAllLegalMoves().stream().anyMatch(move -> board.toPackedMove(move) == bestMove));
+        assertTrue(result.getNodes() >= board.getNodes());
+        assertEquals(before, board.getFEN());
+    }
+
+    @Test
+    public void testTimeManagedSearchRespectsLimits() {
+        SearchLimits clock = new SearchLimits();
+        clock.setWhiteTime(60000);
+        clock.setBlackTime(1000);
+        clock.setWhiteIncrement(1000);
+        TimeManager white = new TimeManager(clock, Color.WHITE);
+        TimeManager black = new TimeManager(clock, Color.BLACK);
+        assertTrue(white.getSoftLimit() <= white.getHardLimit());
+        assertTrue(white.getHardLimit() < 60000);
+        assertTrue(black.getSoftLimit() < white.getSoftLimit());
+        assertFalse(new TimeManager(new SearchLimits(), Color.WHITE).isTimeLimited());
+
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -";
+        LazySmpSearch search = new LazySmpSearch(nn);
+
+        Board board = setUp(fen, Color.WHITE);
+        SearchResult fixedDepth = search.search(board, SearchLimits.depth(3));
+        assertEquals(3, fixedDepth.getDepth());
+        assertNotNull(fixedDepth.getBestMove());
+
+        SearchResult timed = search.search(board, SearchLimits.moveTime(300));
+        assertTrue(timed.getTimeMillis() < 1000);
+        assertTrue(timed.getDepth() >= 1);
+        assertNotNull(timed.getBestMove());
+
+        SearchLimits nodes = new SearchLimits();
+        nodes.setNodes(5000);
+        SearchResult nodeLimited = search.search(board, nodes);
+        assertNotNull(nodeLimited.getBestMove());
+        assertTrue(nodeLimited.getDepth() < Constants.MAX_SEARCH_DEPTH);
+        search.shutdown();
+    }
+
+    @Test
+    public void testUciSessionAnswersCommands() throws IOException {
+        Board promotion = setUp("8/P7/8/8/8/8/8/k6K w - -", Color.WHITE);
+        Move knightPromotion = Move.uciStringToMove("a7a8n", promotion);
+        assertEquals(Pieces.KNIGHT, ((PawnMove) knightPromotion).getPromotedPiece());
+
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        UciEngine engine = new UciEngine(nn, new PrintStream(output, true));
+        String commands = String.join("\n",
+            "uci",
+            "setoption name Hash value 4",
+            "isready",
+            "position startpos moves e2e4 e7e5 g1f3",
+            "go depth 3",
+            "isready",
+            "quit");
+        engine.run(new BufferedReader(new StringReader(commands)));
+
+        List<String> replies = List.of(output.toString().split("\\R"));
+        assertTrue(replies.contains("uciok"));
+        assertEquals(2, replies.stream().filter(line -> line.equals("readyok")).count());
+        assertTrue(replies.stream().anyMatch(line -> line.startsWith("info depth 1 ") && line.contains(" pv ")));
+        String bestMove = replies.stream().filter(line -> line.startsWith("bestmove ")).findFirst().orElseThrow();
+
+        Board board = setUp("rnbqkbnr/pppp1ppp/8/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq -", Color.BLACK);
+        assertNotNull(Move.uciStringToMove(bestMove.split(" ")[1], board));
+    }
+
+    @Test
+    public void testQuiescenceSeesMateAndCapturesAtTheHorizon() {
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+
+        // the checked side gets its evasions searched below depth 0, so a one ply search sees the mate
+        Board backRank = setUp("6k1/5ppp/8/8/8/8/8/R5K1 w - -", Color.WHITE);
+        assertEquals(Score.mateIn(1), backRank.search(1, nn));
+        assertEquals("a1a8", PackedMove.toUciString(backRank.toPackedMove(backRank.getSearchBestMove())));
+
+        // with nothing to capture the quiescence score is the static evaluation
+        Board quiet = setUp("4k3/8/8/8/8/8/8/4K3 w - -", Color.WHITE);
+        assertEquals(0.0, quiet.search(0, nn));
+        Board pawns = setUp("4k3/4p3/8/8/8/8/4P3/4K3 w - -", Color.WHITE);
+        assertEquals(Math.round(pawns.evaluate(nn)), pawns.search(0, nn));
+
+        // standing pat is a lower bound, taking the hanging queen can only add to it
+        Board hanging = setUp("4k3/8/8/3q4/4P3/8/8/4K3 w - -", Color.WHITE);
+        double standPat = hanging.evaluate(nn);
+        assertTrue(hanging.search(0, nn) >= standPat);
+    }
+
+    @Test
+    public void testPrincipalVariationSearchReportsMateDistanceAndLine() {
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+
+        // mate in two moves, three plies: Kb6 and Rh8
+        Board board = setUp("k7/8/2K5/8/8/8/8/7R w - -", Color.WHITE);
+        for (int depth = 1; depth <= 4; depth++) {
+            board.searchRoot(depth, nn);
+        }
+        assertEquals(Score.mateIn(3), board.getSearchScore());
+        assertEquals(2, Score.mateInMoves(board.getSearchScore()));
+
+        int[] pv = board.getPrincipalVariation();
+        assertEquals(3, pv.length);
+        assertTrue(PackedMove.sameMove(pv[0], board.toPackedMove(board.getSearchBestMove())));
+        String fen = board.getFEN();
+        int[] played = new int[pv.length];
+        for (int i = 0; i < pv.length; i++) {
+            int move = pv[i];
+            played[i] = board.getAllLegalMoves().stream().mapToInt(board::toPackedMove)
+                .filter(legal -> PackedMove.sameMove(legal, move)).findFirst().orElseThrow();
+            board.makeMove(played[i]);
+        }
+        assertTrue(board.isCheckMate());
+        for (int i = pv.length - 1; i >= 0; i--) {
+            board.undoMove(played[i]);
+        }
+        assertEquals(fen, board.getFEN());
+
+        // the white's view wrapper agrees with the side to move's score
+        Board black = setUp("7r/8/8/8/8/2k5/8/K7 b - -", Color.BLACK);
+        assertEquals(-Score.mateIn(3), black.minimax(4, nn, false, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void testNullMoveOnlyPassesTheTurn() {
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+        Board board = setUp("rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR b KQkq -", Color.BLACK);
+        board.makeMove(board.toPackedMove(Move.uciStringToMove("f7f5", board)));
+        String fen = board.getFEN();
+        long key = board.getZobristKey();
+        double score = board.evaluate(nn);
+
+        // the en passant chance on f6 is gone after passing, so the key matches the fen without it
+        board.makeNullMove();
+        assertEquals(Color.BLACK, board.getTurn());
+        assertEquals(-1, board.getEnPassantFile());
+        Board passed = setUp("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR b KQkq -", Color.BLACK);
+        assertEquals(passed.getZobristKey(), board.getZobristKey());
+        assertEquals(passed.evaluate(nn), board.evaluate(nn), 1e-3);
+
+        board.undoNullMove();
+        assertEquals(fen, board.getFEN());
+        assertEquals(key, board.getZobristKey());
+        assertEquals(score, board.evaluate(nn), 1e-3);
+
+        // king and pawns only, the side to move must not pass
+        assertFalse(setUp("8/8/8/4k3/8/8/4P3/4K3 w - -", Color.WHITE).hasNonPawnMaterial(Color.WHITE));
+        assertTrue(board.hasNonPawnMaterial(Color.WHITE));
+    }
+
+    @Test
+    public void testSearchHistoryKeepsKillersCounterMovesAndBoundedScores() {
+        SearchHistory history = new SearchHistory(8);
+        int e4 = PackedMove.encode(12, 28, PackedMove.DOUBLE_PAWN_PUSH);
+        int nf3 = PackedMove.encode(6, 21, PackedMove.QUIET);
+        int d4 = PackedMove.encode(11, 27, PackedMove.DOUBLE_PAWN_PUSH);
+
+        history.addCutoff(Color.WHITE, 2, e4, Pieces.KNIGHT, 45, 4);
+        history.addCutoff(Color.WHITE, 2, nf3, Pieces.PAWN, 36, 4);
+        history.addCutoff(Color.WHITE, 2, nf3, Pieces.PAWN, 36, 4);
+        assertEquals(nf3, history.killer(2, 0));
+        assertEquals(e4, history.killer(2, 1));
+        assertEquals(e4, history.counterMove(Color.WHITE, Pieces.KNIGHT, 45));
+        assertEquals(nf3, history.counterMove(Color.WHITE, Pieces.PAWN, 36));
+        assertEquals(PackedMove.NONE, history.counterMove(Color.BLACK, Pieces.KNIGHT, 45));
+        assertTrue(history.history(Color.WHITE, nf3) > history.history(Color.WHITE, e4));
+        assertEquals(0, history.history(Color.BLACK, nf3));
+
+        // gravity keeps repeated updates inside the bound
+        for (int i = 0; i < 1000; i++) {
+            history.addCutoff(Color.WHITE, 3, d4, Pieces.NONE, 0, 20);
+            history.addFailure(Color.WHITE, e4, 20);
+        }
+        assertTrue(history.history(Color.WHITE, d4) <= SearchHistory.MAX_HISTORY);
+        assertTrue(history.history(Color.WHITE, d4) > SearchHistory.MAX_HISTORY / 2);
+        assertTrue(history.history(Color.WHITE, e4) >= -SearchHistory.MAX_HISTORY);
+
+        int before = history.history(Color.WHITE, d4);
+        history.age();
+        assertEquals(PackedMove.NONE, history.killer(2, 0));
+        assertEquals(before / 2, history.history(Color.WHITE, d4));
+
+        // ordering still finds the mate
+        NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");
+        Board board = setUp("6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1", Color.WHITE);
+        board.search(5, nn);
+        assertEquals(Score.mateIn(1), board.getSearchScore());
+        assertEquals("d1d8", PackedMove.toUciString(board.getPrincipalVariation()[0]));
+    }
+
+    @Test
+    public void testMovePickerReturnsEveryLegalMoveOnceInStages() {
+        Board board = setUp("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", Color.WHITE);
+        List<Move> legalMoves = board.getAllLegalMoves();
+        SearchHistory history = new SearchHistory(8);
+        int castle = PackedMove.encode(4, 6, PackedMove.KING_SIDE_CASTLE);
+        int illegalKiller = PackedMove.encode(0, 56, PackedMove.QUIET);
+        history.addCutoff(Color.WHITE, 1, illegalKiller, Pieces.NONE, 0, 3);
+        history.addCutoff(Color.WHITE, 1, castle, Pieces.NONE, 0, 3);
+
+        MovePicker picker = new MovePicker(board, history);
+        int hashMove = PackedMove.encode(36, 53, PackedMove.CAPTURE);
+        picker.reset(hashMove, 1, Pieces.NONE, 0);
+        java.util.Set<Integer> seen = new java.util.HashSet<>();
+        List<Integer> order = new java.util.ArrayList<>();
+        int move;
+        while ((move = picker.next()) != PackedMove.NONE) {
+            assertTrue(seen.add(move & PackedMove.MOVE_MASK), "returned twice: " + PackedMove.toUciString(move));
+            order.add(move);
+        }
+        assertEquals(legalMoves.size(), order.size());
+        assertEquals("e5f7", PackedMove.toUciString(order.get(0)));
+
+        // good captures, then the killer, then the quiet moves, losing captures last
+        int killerIndex = order.indexOf(castle);
+        assertTrue(killerIndex > 0);
+        for (int i = 1; i < killerIndex; i++) {
+            assertTrue(PackedMove.isCapture(order.get(i)) || PackedMove.isPromotion(order.get(i)));
+        }
+        assertFalse(PackedMove.isCapture(order.get(killerIndex + 1)));
+        assertTrue(PackedMove.isCapture(order.get(order.size() - 1)));
+
+        // quiescence mode leaves out quiet moves and captures that lose material
+        picker.resetCaptures();
+        List<String> captures = new java.util.ArrayList<>();
+        while ((move = picker.next()) != PackedMove.NONE) {
+            assertTrue(PackedMove.isCapture(move) || PackedMove.isPromotion(move));
+            captures.add(PackedMove.toUciString(move));
+        }
+        assertTrue(captures.contains("g2h3"));
+        assertFalse(captures.contains("f3h3"));
+        assertFalse(captures.contains("f3f6"));
+        assertFalse(captures.contains("e5g6"));
+    }
+
+    private int staticExchange(String fen, String uciMove) {
+        Board board = setUp(fen, Color.WHITE);
+        for (Move move : board.getAllLegalMoves()) {
+            int packed = board.toPackedMove(move);
+            if (PackedMove.toUciString(packed).equals(uciMove)) {
+                return board.staticExchange(packed);
+            }
+        }
+        throw new IllegalArgumentException(uciMove);
+    }
+
+    @Test
+    public void testStaticExchangeResolvesCapturesWithXRays() {
+        // undefended pawn
+        assertEquals(100, staticExchange("1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - - 0 1", "e1e5"));
+        // knight for pawn, the rook and queen behind do not help
+        assertEquals(-220, staticExchange("1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1", "d3e5"));
+        // doubled rooks on both sides, black's second rook only joins through the first
+        assertEquals(-400, staticExchange("4k3/3r4/3r4/3p4/8/8/3R4/3RK3 w - - 0 1", "d2d5"));
+        // white's rook behind the queen lets it trade a rook for a rook and a pawn
+        assertEquals(100, staticExchange("4k3/8/3r4/3p4/8/8/3R4/3RK3 w - - 0 1", "d2d5"));
+        // a king may only recapture when nothing else defends the piece
+        assertEquals(-220, staticExchange("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", "e5f7"));
+        assertEquals(100, staticExchange("4k3/5p2/8/8/8/8/5R2/4KR2 w - - 0 1", "f2f7"));
+        assertEquals(-400, staticExchange("4k3/5p2/8/8/8/8/5R2/4K3 w - - 0 1", "f2f7"));
+        // pawn trade, and a queen taking a knight that two pieces defend
+        assertEquals(0, staticExchange("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", "d5e6"));
+        assertEquals(-580, staticExchange("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", "f3f6"));
+    }
+
+    private void playUciMoves(Board board, String... moves) {
+        for (String move : moves) {
+            board.makeMove(Move.uciStringToMove(move, board));
+        }
+    }
+
+    @Test
+    public void testRepetitionsAreFoundInTheKeyHistory() {
+        Board board = setUp(Color.WHITE);
+        playUciMoves(board, "g1f3", "g8f6", "f3g1", "f6g8");
+        assertFalse(board.isThreeFoldRepetition());
+        playUciMoves(board, "g1f3", "g8f6", "f3g1");
+        assertFalse(board.isThreeFoldRepetition());
+        playUciMoves(board, "f6g8");
+        assertTrue(board.isThreeFoldRepetition());
+
+        // a pawn move in between makes the earlier positions unreachable
+        board = setUp(Color.WHITE);
+        playUciMoves(board, "g1f3", "g8f6", "f3g1", "f6g8", "e2e3", "e7e6");
+        playUciMoves(board, "g1f3", "g8f6", "f3g1", "f6g8", "g1f3", "g8f6", "f3g1");
+        assertFalse(board.isThreeFoldRepetition());
+        playUciMoves(board, "f6g8");
+        assertTrue(board.isThreeFoldRepetition());
+
+        // the search's null move is a barrier as well
+        board.makeNullMove();
+        assertFalse(board.isThreeFoldRepetition());
+        board.undoNullMove();
+        assertTrue(board.isThreeFoldRepetition());
+        board.makeNullMove();
+        playUciMoves(board, "g8f6", "g1f3", "f6g8", "f3g1");
+        assertFalse(board.isThreeFoldRepetition());
+    }
+
+    @Test
+    public void testIrreversibleStateIsRestoredOnUndo() {
+        String fen = "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 12 30";
+        Board board = setUp(fen, Color.WHITE);
+        assertEquals(fen, board.getFEN());
+
+        // a quiet rook move drops its right, taking a rook drops the other side's and resets the clock
+        int rookMove = board.toPackedMove(Move.uciStringToMove("h1h2", board));
+        board.makeMove(rookMove);
+        assertEquals("r3k2r/8/8/8/8/8/7R/R3K3 b Qkq - 13 30", board.getFEN());
+        int capture = board.toPackedMove(Move.uciStringToMove("a8a1", board));
+        board.makeMove(capture);
+        assertEquals("4k2r/8/8/8/8/8/7R/r3K3 w k - 0 31", board.getFEN());
+        assertEquals(setUp(board.getFEN(), Color.WHITE).getZobristKey(), board.getZobristKey());
+        board.undoMove(capture);
+        board.undoMove(rookMove);
+        assertEquals(fen, board.getFEN());
+
+        board = setUp(Color.WHITE);
+        playUciMoves(board, "e2e4");
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", board.getFEN());
+
+        board = setUp("8/8/4k3/8/8/3K4/8/7R w - - 99 80", Color.WHITE);
+        assertFalse(board.fiftyMoveRule());
+        int kingMove = board.toPackedMove(Move.uciStringToMove("d3d4", board));
+        board.makeMove(kingMove);
+        assertTrue(board.fiftyMoveRule());
+        board.undoMove(kingMove);
+        assertFalse(board.fiftyMoveRule());
+    }
+
     @Test
     public void predictionTest() {
         NeuralNetwork nn = new NeuralNetwork("chess_nn_model.json");